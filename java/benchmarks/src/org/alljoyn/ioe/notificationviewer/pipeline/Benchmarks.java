@@ -0,0 +1,68 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * Runs the pipeline benchmarks on the host JVM, see the benchmark target in
+ * custom_rules.xml. With no arguments every benchmark runs, otherwise only
+ * the ones named.
+ */
+public final class Benchmarks {
+
+    private static final String[] ALL = { "RenderBatchBenchmark", "EmergencyLatencyBenchmark", "RecordFootprintBenchmark", "TextMeasureBenchmark",
+            "CardListBenchmark", "PreRenderPoolBenchmark" };
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] names = (0 == args.length) ? ALL : args;
+        for (String name : names) {
+            System.out.println("== " + name);
+            Class.forName(Benchmarks.class.getPackage().getName() + "." + name).getMethod("main", String[].class)
+                    .invoke(null, (Object) new String[0]);
+            System.out.println();
+        }
+    }
+
+    /**
+     * Keeps the calling thread busy, standing in for work that needs a device, such as inflating a view
+     */
+    static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() - end < 0) {
+            // busy
+        }
+    }
+
+    /**
+     * @param values sorted in place
+     */
+    static long percentile(long[] values, int percent) {
+        if (0 == values.length) {
+            return 0;
+        }
+        Arrays.sort(values);
+        return values[Math.min(values.length - 1, values.length * percent / 100)];
+    }
+
+    static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+}
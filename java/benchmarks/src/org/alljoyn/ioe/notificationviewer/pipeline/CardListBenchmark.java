@@ -0,0 +1,125 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Main thread time of removing 100, 1k and 10k cards from the virtualized
+ * overlay, a frame's worth of expiries at a time in a shuffled order, for an
+ * ArrayList that shifts its tail and notifies the ListView per removal and
+ * for the CompactingList the VirtualCardList uses, which leaves holes and
+ * compacts and notifies once per frame. Removing is real work here, only the
+ * notification is counted.
+ */
+public class CardListBenchmark {
+
+    private static final int REMOVALS_PER_FRAME = 50;
+    private static final int ROUNDS = 5;
+    private static final int[] ENTRIES = { 100, 1000, 10000 };
+
+    public static void main(String[] args) {
+        System.out.println(REMOVALS_PER_FRAME + " removals per frame, best of " + ROUNDS);
+        System.out.println(String.format("%-15s %7s %9s %12s %9s", "list", "entries", "total ms", "max frame ms", "notifies"));
+        for (int entries : ENTRIES) {
+            arrayList(entries);
+            compactingList(entries);
+        }
+    }
+
+    /**
+     * As VirtualCardList did with ArrayList.remove() and notifyDataSetChanged() per removal
+     */
+    private static void arrayList(int count) {
+        long bestTotal = Long.MAX_VALUE;
+        long bestMaxFrame = 0;
+        int notifies = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Object> entries = new ArrayList<Object>();
+            List<Object> order = new ArrayList<Object>();
+            for (int i = 0; i < count; i++) {
+                Object entry = new Object();
+                entries.add(entry);
+                order.add(entry);
+            }
+            Collections.shuffle(order, new Random(count));
+
+            long total = 0;
+            long maxFrame = 0;
+            notifies = 0;
+            for (int frameStart = 0; frameStart < count; frameStart += REMOVALS_PER_FRAME) {
+                long start = System.nanoTime();
+                for (int i = frameStart; i < Math.min(count, frameStart + REMOVALS_PER_FRAME); i++) {
+                    entries.remove(order.get(i));
+                    notifies++;
+                }
+                long frame = System.nanoTime() - start;
+                total += frame;
+                maxFrame = Math.max(maxFrame, frame);
+            }
+            if (total < bestTotal) {
+                bestTotal = total;
+                bestMaxFrame = maxFrame;
+            }
+        }
+        print("ArrayList", count, bestTotal, bestMaxFrame, notifies);
+    }
+
+    /**
+     * As VirtualCardList does, removing by sequence number and compacting once per frame
+     */
+    private static void compactingList(int count) {
+        long bestTotal = Long.MAX_VALUE;
+        long bestMaxFrame = 0;
+        int notifies = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            CompactingList<Object> entries = new CompactingList<Object>();
+            List<Long> order = new ArrayList<Long>();
+            for (int i = 0; i < count; i++) {
+                order.add(entries.add(new Object()));
+            }
+            Collections.shuffle(order, new Random(count));
+
+            long total = 0;
+            long maxFrame = 0;
+            notifies = 0;
+            for (int frameStart = 0; frameStart < count; frameStart += REMOVALS_PER_FRAME) {
+                long start = System.nanoTime();
+                for (int i = frameStart; i < Math.min(count, frameStart + REMOVALS_PER_FRAME); i++) {
+                    entries.remove(order.get(i));
+                }
+                entries.compact();
+                notifies++;
+                long frame = System.nanoTime() - start;
+                total += frame;
+                maxFrame = Math.max(maxFrame, frame);
+            }
+            if (total < bestTotal) {
+                bestTotal = total;
+                bestMaxFrame = maxFrame;
+            }
+        }
+        print("CompactingList", count, bestTotal, bestMaxFrame, notifies);
+    }
+
+    private static void print(String list, int entries, long total, long maxFrame, int notifies) {
+        System.out.println(String.format("%-15s %7d %9s %12s %9d", list, entries, Benchmarks.millis(total), Benchmarks.millis(maxFrame), notifies));
+    }
+}
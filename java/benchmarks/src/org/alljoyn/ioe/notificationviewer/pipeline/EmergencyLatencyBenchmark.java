@@ -0,0 +1,186 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Time from queuing to screen of EMERGENCY cards sent during an INFO flood
+ * that is faster than the main thread can render. The single FIFO the
+ * RenderBatcher used before is compared with the {@link LaneScheduler}
+ * policies. Cards are taken from the frame callback of a simulated main
+ * thread until the frame's time budget is used, with a fixed busy time standing in
+ * for binding each one.
+ */
+public class EmergencyLatencyBenchmark {
+
+    private static final long BIND_NANOS = TimeUnit.MICROSECONDS.toNanos(400);
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int INFO_PER_SECOND = 1500;
+    private static final long FLOOD_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long EMERGENCY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long PRODUCER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * A queued card, enqueuedAt is negative for INFO
+     */
+    private static final class Card {
+        final long enqueuedAt;
+        final boolean emergency;
+
+        Card(long enqueuedAt, boolean emergency) {
+            this.enqueuedAt = enqueuedAt;
+            this.emergency = emergency;
+        }
+    }
+
+    private interface Pending {
+        void offer(NotificationMessageType type, Card card);
+
+        Card poll();
+
+        boolean isEmpty();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println(INFO_PER_SECOND + " INFO/s for " + TimeUnit.NANOSECONDS.toMillis(FLOOD_NANOS) + " ms, an EMERGENCY every "
+                + TimeUnit.NANOSECONDS.toMillis(EMERGENCY_INTERVAL_NANOS) + " ms, " + Benchmarks.millis(FRAME_BUDGET_NANOS) + " ms of cards per frame at "
+                + Benchmarks.millis(BIND_NANOS) + " ms each");
+        System.out.println(String.format("%-10s %11s %10s %10s %10s %15s", "queue", "emergencies", "p50 ms", "p99 ms", "max ms", "INFO shown"));
+
+        final ConcurrentLinkedQueue<Card> fifo = new ConcurrentLinkedQueue<Card>();
+        run("fifo", new Pending() {
+            @Override
+            public void offer(NotificationMessageType type, Card card) {
+                fifo.add(card);
+            }
+
+            @Override
+            public Card poll() {
+                return fifo.poll();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return fifo.isEmpty();
+            }
+        });
+        run("strict", lanes(LaneScheduler.Policy.STRICT));
+        run("weighted", lanes(LaneScheduler.Policy.WEIGHTED));
+    }
+
+    private static Pending lanes(LaneScheduler.Policy policy) {
+        final LaneScheduler<Card> lanes = new LaneScheduler<Card>(policy, new int[] { 4, 1 }, 2000, new PipelineMetrics());
+        return new Pending() {
+            @Override
+            public void offer(NotificationMessageType type, Card card) {
+                lanes.offer(type, card);
+            }
+
+            @Override
+            public Card poll() {
+                return lanes.poll();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return lanes.isEmpty();
+            }
+        };
+    }
+
+    private static void run(String name, final Pending pending) throws InterruptedException {
+        final SimulatedMainThread main = new SimulatedMainThread();
+        final int emergencies = (int) (FLOOD_NANOS / EMERGENCY_INTERVAL_NANOS);
+        final long[] latencies = new long[emergencies];
+        final AtomicInteger emergenciesShown = new AtomicInteger();
+        final AtomicInteger infoShown = new AtomicInteger();
+        final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+        final Runnable frame = new Runnable() {
+            @Override
+            public void run() {
+                frameScheduled.set(false);
+                long start = System.nanoTime();
+                int count = 0;
+                Card card;
+                while ((0 == count || System.nanoTime() - start < FRAME_BUDGET_NANOS) && null != (card = pending.poll())) {
+                    Benchmarks.spin(BIND_NANOS);
+                    if (card.emergency) {
+                        latencies[emergenciesShown.getAndIncrement()] = System.nanoTime() - card.enqueuedAt;
+                    } else {
+                        infoShown.incrementAndGet();
+                    }
+                    count++;
+                }
+                // the rest of the flood is of no interest once every EMERGENCY is on screen
+                if (emergenciesShown.get() < emergencies && !pending.isEmpty()) {
+                    schedule();
+                }
+            }
+
+            void schedule() {
+                if (frameScheduled.compareAndSet(false, true)) {
+                    main.postFrameCallback(this);
+                }
+            }
+        };
+
+        Thread producer = new Thread("producer") {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                long nextEmergency = start + EMERGENCY_INTERVAL_NANOS / 2;
+                long sent = 0;
+                int emergenciesSent = 0;
+                long now;
+                while ((now = System.nanoTime()) - start < FLOOD_NANOS) {
+                    long due = (now - start) * INFO_PER_SECOND / TimeUnit.SECONDS.toNanos(1);
+                    for (; sent < due; sent++) {
+                        pending.offer(NotificationMessageType.INFO, new Card(-1, false));
+                    }
+                    if (now - nextEmergency >= 0 && emergenciesSent < emergencies) {
+                        pending.offer(NotificationMessageType.EMERGENCY, new Card(System.nanoTime(), true));
+                        emergenciesSent++;
+                        nextEmergency += EMERGENCY_INTERVAL_NANOS;
+                    }
+                    if (frameScheduled.compareAndSet(false, true)) {
+                        main.postFrameCallback(frame);
+                    }
+                    LockSupport.parkNanos(PRODUCER_TICK_NANOS);
+                }
+            }
+        };
+        producer.start();
+        main.loop(new SimulatedMainThread.Condition() {
+            @Override
+            public boolean isDone() {
+                return emergenciesShown.get() == emergencies;
+            }
+        });
+        producer.join();
+
+        System.out.println(String.format("%-10s %11d %10s %10s %10s %15d", name, emergencies, Benchmarks.millis(Benchmarks.percentile(latencies, 50)),
+                Benchmarks.millis(Benchmarks.percentile(latencies, 99)), Benchmarks.millis(Benchmarks.percentile(latencies, 100)), infoShown.get()));
+    }
+}
@@ -0,0 +1,187 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the PreRenderPool with no workers, where the ingest thread
+ * prepares every card itself, and with 1, 2 and 4 workers, for a burst of
+ * cards from several devices. Each card runs the text part of the pre-render
+ * work: a TextHeightCache lookup and, on a miss, a measure and a put, as
+ * CardTextMeasurer.prefetch does. StaticLayout needs a device, so the
+ * measure is a greedy word wrap over a table of glyph advances; it is real
+ * CPU work, nothing waits, so workers only help as far as there are cores
+ * to run them.
+ */
+public class PreRenderPoolBenchmark {
+
+    private static final int WIDTH = 600;
+    private static final int PAINT_CONFIG = 1;
+    private static final int LINE_HEIGHT = 24;
+    private static final int MAX_CACHED = 256;
+    private static final int DEVICES = 16;
+    private static final int CARDS = 20000;
+    private static final int RECURRING_MESSAGES = 20;
+    private static final int RECURRING_PERCENT = 50;
+    private static final int ROUNDS = 5;
+    private static final int[] WORKERS = { 0, 1, 2, 4 };
+
+    /**
+     * Advance of each printable ASCII glyph, in pixels of a 16px sans serif
+     */
+    private static final float[] ADVANCES = new float[128];
+    static {
+        for (char c = ' '; c < 127; c++) {
+            if ("il.,:;'|!".indexOf(c) >= 0) {
+                ADVANCES[c] = 4.2f;
+            } else if ("mwMW".indexOf(c) >= 0) {
+                ADVANCES[c] = 13.5f;
+            } else if (Character.isUpperCase(c) || Character.isDigit(c)) {
+                ADVANCES[c] = 10.1f;
+            } else {
+                ADVANCES[c] = 8.3f;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        System.out.println(CARDS + " cards from " + DEVICES + " devices, " + RECURRING_PERCENT + "% of the messages are one of " + RECURRING_MESSAGES
+                + ", best of " + ROUNDS + ", " + cpus + " cpus");
+        System.out.println(String.format("%-8s %10s %12s %12s %15s", "workers", "total ms", "cards/s", "vs inline", "max queue ms"));
+        UUID[] appIds = new UUID[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            appIds[i] = UUID.randomUUID();
+        }
+        String[] texts = texts();
+        // compiles the measure and the pool before anything is timed
+        for (int workers : WORKERS) {
+            prepare(workers, appIds, texts);
+        }
+        long inline = 0;
+        for (int workers : WORKERS) {
+            long elapsed = run(workers, appIds, texts, inline);
+            if (0 == workers) {
+                inline = elapsed;
+            }
+        }
+        if (cpus < WORKERS[WORKERS.length - 1]) {
+            System.out.println("fewer cpus than workers, the extra workers only share the cpus there are");
+        }
+    }
+
+    /**
+     * @param inline best elapsed time with no workers, 0 if this is that run
+     * @return the best elapsed time
+     */
+    private static long run(int workers, UUID[] appIds, final String[] texts, long inline) throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        long bestQueue = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            PipelineMetrics metrics = new PipelineMetrics();
+            long start = System.nanoTime();
+            prepare(workers, appIds, texts, metrics);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed < best) {
+                best = elapsed;
+                bestQueue = metrics.getValue(PreRenderPool.METRIC_QUEUE_NANOS_MAX);
+            }
+        }
+        long cardsPerSecond = CARDS * TimeUnit.SECONDS.toNanos(1) / best;
+        String speedup = String.format("%.2fx", (0 == inline) ? 1.0 : (double) inline / best);
+        System.out.println(String.format("%-8d %10s %12d %12s %15s", workers, Benchmarks.millis(best), cardsPerSecond, speedup,
+                Benchmarks.millis(bestQueue)));
+        return best;
+    }
+
+    private static void prepare(int workers, UUID[] appIds, String[] texts) throws InterruptedException {
+        prepare(workers, appIds, texts, new PipelineMetrics());
+    }
+
+    /**
+     * Hands every card to a new pool and waits until all of them are prepared
+     */
+    private static void prepare(int workers, UUID[] appIds, String[] texts, PipelineMetrics metrics) throws InterruptedException {
+        PreRenderPool pool = new PreRenderPool(workers, metrics);
+        final TextHeightCache cache = new TextHeightCache(MAX_CACHED);
+        final CountDownLatch done = new CountDownLatch(texts.length);
+        for (int i = 0; i < texts.length; i++) {
+            final String text = texts[i];
+            pool.execute(appIds[i % appIds.length], new Runnable() {
+                @Override
+                public void run() {
+                    if (cache.get(text, WIDTH, PAINT_CONFIG) < 0) {
+                        cache.put(text, WIDTH, PAINT_CONFIG, measure(text, WIDTH));
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+    }
+
+    /**
+     * Breaks the text into lines at spaces, or inside a word wider than a line
+     *
+     * @return the height of the lines
+     */
+    static int measure(String text, int width) {
+        int lines = 1;
+        float line = 0;
+        float word = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            float advance = (c < ADVANCES.length) ? ADVANCES[c] : ADVANCES['M'];
+            if (' ' == c) {
+                line += word + advance;
+                word = 0;
+            } else if (line + word + advance <= width) {
+                word += advance;
+            } else if (line > 0) {
+                lines++;
+                line = 0;
+                word += advance;
+            } else {
+                lines++;
+                word = advance;
+            }
+        }
+        return lines * LINE_HEIGHT;
+    }
+
+    private static String[] texts() {
+        Random random = new Random(CARDS);
+        String[] texts = new String[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            if (random.nextInt(100) < RECURRING_PERCENT) {
+                texts[i] = "Door opened " + random.nextInt(RECURRING_MESSAGES);
+            } else {
+                StringBuilder text = new StringBuilder("Package delivered, tracking number ").append(i);
+                while (text.length() < 200) {
+                    text.append(", left at the front door of building ").append(random.nextInt(1000));
+                }
+                texts[i] = text.toString();
+            }
+        }
+        return texts;
+    }
+}
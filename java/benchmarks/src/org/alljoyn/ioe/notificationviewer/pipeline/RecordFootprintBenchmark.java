@@ -0,0 +1,94 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alljoyn.ns.Notification;
+import org.alljoyn.ns.NotificationMessageType;
+import org.alljoyn.ns.NotificationText;
+
+/**
+ * Heap held by 10k received notifications, kept as the AllJoyn
+ * {@link Notification} the viewer used to pass around and as the
+ * {@link NotificationRecord} built from it at receive(). Each notification
+ * carries three language variants, custom attributes and the URLs a
+ * producer typically sets. The Notification is built with the public
+ * producer API, so it lacks the sender fields the bus fills in and the
+ * numbers understate what it held.
+ */
+public class RecordFootprintBenchmark {
+
+    private static final int HELD = 10000;
+    private static final String[] LANGUAGES = { "en", "de", "fr" };
+
+    public static void main(String[] args) throws Exception {
+        TextNormalizer normalizer = new TextNormalizer(0, new PipelineMetrics());
+
+        long before = usedHeap();
+        Notification[] notifications = new Notification[HELD];
+        for (int i = 0; i < HELD; i++) {
+            notifications[i] = received(i);
+        }
+        long notificationBytes = usedHeap() - before;
+        notifications = null;
+
+        before = usedHeap();
+        NotificationRecord[] records = new NotificationRecord[HELD];
+        for (int i = 0; i < HELD; i++) {
+            records[i] = NotificationRecord.from(received(i), "en", normalizer);
+        }
+        long recordBytes = usedHeap() - before;
+
+        System.out.println(String.format("%-20s %8s %14s %14s", "held as", "count", "heap KiB", "bytes each"));
+        System.out.println(String.format("%-20s %8d %14d %14d", "Notification", HELD, notificationBytes / 1024, notificationBytes / HELD));
+        System.out.println(String.format("%-20s %8d %14d %14d", "NotificationRecord", records.length, recordBytes / 1024, recordBytes / HELD));
+    }
+
+    /**
+     * A notification as a producer sends it, with its own copy of every string as if it was unmarshalled from the bus
+     */
+    private static Notification received(int i) throws Exception {
+        List<NotificationText> text = new ArrayList<NotificationText>(LANGUAGES.length);
+        for (String language : LANGUAGES) {
+            text.add(new NotificationText(new String(language), "Sensor " + (i % 20) + " in the living room reports reading " + i
+                    + ", check the device if this keeps coming back (" + language + ")"));
+        }
+        Notification notification = new Notification((0 == i % 10) ? NotificationMessageType.WARNING : NotificationMessageType.INFO, text);
+        Map<String, String> customAttributes = new HashMap<String, String>();
+        customAttributes.put("source", "sensor-" + (i % 20));
+        customAttributes.put("reading", String.valueOf(i));
+        customAttributes.put("unit", new String("celsius"));
+        customAttributes.put("severity", String.valueOf(i % 3));
+        notification.setCustomAttributes(customAttributes);
+        notification.setRichIconUrl("http://192.168.1." + (i % 20) + "/icons/sensor.png");
+        notification.setResponseObjectPath("/Sensor/" + (i % 20) + "/Response/" + i);
+        return notification;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,134 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Main thread cost per frame of a burst of cards, for the path that posted a
+ * message and a scroll per card and for the frame-aligned batches of the
+ * RenderBatcher, which add cards until render_frame_budget_in_ms is used
+ * and scroll once per frame. Binding a card and scrolling are stood in for by
+ * fixed busy times, so the numbers show how the same work is spread over
+ * frames rather than what a view costs on a given device. A frame over
+ * budget leaves too little of the vsync for measure, layout and draw.
+ */
+public class RenderBatchBenchmark {
+
+    private static final long BIND_NANOS = TimeUnit.MICROSECONDS.toNanos(400);
+    private static final long SCROLL_NANOS = TimeUnit.MICROSECONDS.toNanos(300);
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int[] BURSTS = { 10, 100, 1000 };
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("bind " + Benchmarks.millis(BIND_NANOS) + " ms, scroll " + Benchmarks.millis(SCROLL_NANOS) + " ms, frame "
+                + Benchmarks.millis(SimulatedMainThread.FRAME_NANOS) + " ms, batches of " + Benchmarks.millis(FRAME_BUDGET_NANOS) + " ms");
+        System.out.println(String.format("%-10s %6s %9s %12s %12s %12s %14s %13s", "path", "cards", "messages", "busy frames", "over budget",
+                "max frame ms", "missed vsyncs", "last card ms"));
+        for (int burst : BURSTS) {
+            perCard(burst);
+            batched(burst);
+        }
+    }
+
+    /**
+     * One message binding the card and one scroll per notification, as showNotificationWithoutImage() used to post
+     */
+    private static void perCard(final int burst) throws InterruptedException {
+        final SimulatedMainThread main = new SimulatedMainThread();
+        final AtomicInteger shown = new AtomicInteger();
+        final long[] lastShownAt = new long[1];
+        long start = System.nanoTime();
+        for (int i = 0; i < burst; i++) {
+            main.post(new Runnable() {
+                @Override
+                public void run() {
+                    Benchmarks.spin(BIND_NANOS);
+                    shown.incrementAndGet();
+                    lastShownAt[0] = System.nanoTime();
+                }
+            });
+            main.post(new Runnable() {
+                @Override
+                public void run() {
+                    Benchmarks.spin(SCROLL_NANOS);
+                }
+            });
+        }
+        main.loop(new SimulatedMainThread.Condition() {
+            @Override
+            public boolean isDone() {
+                return burst == shown.get();
+            }
+        });
+        print("per card", burst, main, lastShownAt[0] - start);
+    }
+
+    /**
+     * Cards queued by lane and added in batches from the frame callback, as the RenderBatcher does
+     */
+    private static void batched(final int burst) throws InterruptedException {
+        final SimulatedMainThread main = new SimulatedMainThread();
+        final LaneScheduler<Integer> pending = new LaneScheduler<Integer>(LaneScheduler.Policy.STRICT, null, 0, new PipelineMetrics());
+        final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+        final AtomicInteger shown = new AtomicInteger();
+        final long[] lastShownAt = new long[1];
+        final Runnable frame = new Runnable() {
+            @Override
+            public void run() {
+                frameScheduled.set(false);
+                long start = System.nanoTime();
+                int count = 0;
+                while ((0 == count || System.nanoTime() - start < FRAME_BUDGET_NANOS) && null != pending.poll()) {
+                    Benchmarks.spin(BIND_NANOS);
+                    count++;
+                }
+                if (count > 0) {
+                    Benchmarks.spin(SCROLL_NANOS);
+                    shown.addAndGet(count);
+                    lastShownAt[0] = System.nanoTime();
+                }
+                if (!pending.isEmpty() && frameScheduled.compareAndSet(false, true)) {
+                    main.postFrameCallback(this);
+                }
+            }
+        };
+        long start = System.nanoTime();
+        for (int i = 0; i < burst; i++) {
+            pending.offer(NotificationMessageType.INFO, i);
+            if (frameScheduled.compareAndSet(false, true)) {
+                main.postFrameCallback(frame);
+            }
+        }
+        main.loop(new SimulatedMainThread.Condition() {
+            @Override
+            public boolean isDone() {
+                return burst == shown.get();
+            }
+        });
+        print("batched", burst, main, lastShownAt[0] - start);
+    }
+
+    private static void print(String path, int burst, SimulatedMainThread main, long lastShownNanos) {
+        System.out.println(String.format("%-10s %6d %9d %12d %12d %12s %14d %13s", path, burst, main.getMessagesRun(), main.getBusyFrames(),
+                main.getOverBudgetFrames(), Benchmarks.millis(main.getMaxBusyNanos()), main.getDroppedFrames(), Benchmarks.millis(lastShownNanos)));
+    }
+}
@@ -0,0 +1,134 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stand-in for the Android main thread: a single thread that runs posted
+ * messages and, on every vsync, the frame callback posted for it. It records
+ * how long each frame was busy, how many frames went over the budget, and
+ * how many vsyncs passed while a message or callback was still running.
+ */
+final class SimulatedMainThread {
+
+    static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    /**
+     * Busy time a frame may take before the traversal of the real main thread, measure, layout and draw, no longer fits
+     */
+    static final long BUDGET_NANOS = FRAME_NANOS / 2;
+
+    private final LinkedBlockingQueue<Runnable> messages = new LinkedBlockingQueue<Runnable>();
+    private final AtomicReference<Runnable> frameCallback = new AtomicReference<Runnable>();
+
+    private long busyInFrame;
+    private int busyFrames;
+    private long maxBusyNanos;
+    private int overBudgetFrames;
+    private int droppedFrames;
+    private int messagesRun;
+
+    /**
+     * Any thread
+     */
+    void post(Runnable message) {
+        messages.add(message);
+    }
+
+    /**
+     * Any thread, runs the callback on the next vsync
+     */
+    void postFrameCallback(Runnable callback) {
+        frameCallback.set(callback);
+    }
+
+    /**
+     * Runs on the calling thread until done returns true while nothing is queued
+     */
+    void loop(Condition done) throws InterruptedException {
+        long nextVsync = System.nanoTime() + FRAME_NANOS;
+        while (true) {
+            long now = System.nanoTime();
+            if (now - nextVsync >= 0) {
+                endFrame();
+                nextVsync += FRAME_NANOS;
+                while (now - nextVsync >= 0) {
+                    // a vsync that passed while the thread was busy
+                    droppedFrames++;
+                    nextVsync += FRAME_NANOS;
+                }
+                Runnable callback = frameCallback.getAndSet(null);
+                if (null != callback) {
+                    run(callback);
+                }
+                continue;
+            }
+            Runnable message = messages.poll(nextVsync - now, TimeUnit.NANOSECONDS);
+            if (null != message) {
+                run(message);
+                messagesRun++;
+            } else if (messages.isEmpty() && null == frameCallback.get() && done.isDone()) {
+                endFrame();
+                return;
+            }
+        }
+    }
+
+    private void run(Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        busyInFrame += System.nanoTime() - start;
+    }
+
+    private void endFrame() {
+        if (busyInFrame > 0) {
+            busyFrames++;
+            maxBusyNanos = Math.max(maxBusyNanos, busyInFrame);
+            if (busyInFrame > BUDGET_NANOS) {
+                overBudgetFrames++;
+            }
+        }
+        busyInFrame = 0;
+    }
+
+    int getBusyFrames() {
+        return busyFrames;
+    }
+
+    long getMaxBusyNanos() {
+        return maxBusyNanos;
+    }
+
+    int getOverBudgetFrames() {
+        return overBudgetFrames;
+    }
+
+    int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    int getMessagesRun() {
+        return messagesRun;
+    }
+
+    interface Condition {
+        boolean isDone();
+    }
+}
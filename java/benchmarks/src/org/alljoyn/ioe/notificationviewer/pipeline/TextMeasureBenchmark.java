@@ -0,0 +1,134 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main thread cost of sizing the message text of a stream of cards, for the
+ * path that laid out a StaticLayout on the main thread for every card and for
+ * the CardTextMeasurer path, where a pre-render worker measures the text ahead
+ * of the card and the main thread looks the height up in the
+ * TextHeightCache. Most messages recur, such as "Door opened", the rest are
+ * unique. Laying out is stood in for by a fixed busy time, so the numbers
+ * show where the work runs rather than what a layout costs on a given device.
+ */
+public class TextMeasureBenchmark {
+
+    private static final long LAYOUT_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final int WIDTH = 600;
+    private static final int PAINT_CONFIG = 1;
+    private static final int MAX_CACHED = 256;
+    private static final int RECURRING_MESSAGES = 20;
+    private static final int RECURRING_PERCENT = 80;
+    private static final int[] CARDS = { 100, 1000 };
+
+    private static final String END = "";
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("layout " + Benchmarks.millis(LAYOUT_NANOS) + " ms, " + RECURRING_PERCENT + "% of the messages are one of "
+                + RECURRING_MESSAGES);
+        System.out.println(String.format("%-10s %6s %14s %13s %12s %12s %14s", "path", "cards", "main total ms", "main mean ms",
+                "main max ms", "main layouts", "worker layouts"));
+        for (int cards : CARDS) {
+            String[] texts = texts(cards);
+            onMainThread(texts);
+            prefetched(texts);
+        }
+    }
+
+    /**
+     * A StaticLayout per card on the main thread, as the precalc block used to do
+     */
+    private static void onMainThread(String[] texts) {
+        long[] elapsed = new long[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            long start = System.nanoTime();
+            layout(texts[i]);
+            elapsed[i] = System.nanoTime() - start;
+        }
+        print("main", elapsed, texts.length, 0);
+    }
+
+    /**
+     * Measured by a pre-render worker and looked up on the main thread, as CardTextMeasurer does
+     */
+    private static void prefetched(final String[] texts) throws InterruptedException {
+        final TextHeightCache cache = new TextHeightCache(MAX_CACHED);
+        final BlockingQueue<String> rendered = new LinkedBlockingQueue<String>();
+        final int[] workerLayouts = new int[1];
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (String text : texts) {
+                    if (cache.get(text, WIDTH, PAINT_CONFIG) < 0) {
+                        cache.put(text, WIDTH, PAINT_CONFIG, layout(text));
+                        workerLayouts[0]++;
+                    }
+                    rendered.add(text);
+                }
+                rendered.add(END);
+            }
+        }, "PreRender-0");
+        worker.start();
+
+        long[] elapsed = new long[texts.length];
+        int mainLayouts = 0;
+        int count = 0;
+        String text;
+        while (END != (text = rendered.take())) {
+            long start = System.nanoTime();
+            if (cache.get(text, WIDTH, PAINT_CONFIG) < 0) {
+                cache.put(text, WIDTH, PAINT_CONFIG, layout(text));
+                mainLayouts++;
+            }
+            elapsed[count++] = System.nanoTime() - start;
+        }
+        worker.join();
+        print("prefetched", elapsed, mainLayouts, workerLayouts[0]);
+    }
+
+    private static String[] texts(int cards) {
+        Random random = new Random(cards);
+        String[] texts = new String[cards];
+        for (int i = 0; i < cards; i++) {
+            if (random.nextInt(100) < RECURRING_PERCENT) {
+                texts[i] = "Door opened " + random.nextInt(RECURRING_MESSAGES);
+            } else {
+                texts[i] = "Package delivered, tracking number " + i;
+            }
+        }
+        return texts;
+    }
+
+    private static int layout(String text) {
+        Benchmarks.spin(LAYOUT_NANOS);
+        return 20 * (1 + text.length() / 40);
+    }
+
+    private static void print(String path, long[] elapsed, int mainLayouts, int workerLayouts) {
+        long total = 0;
+        for (long nanos : elapsed) {
+            total += nanos;
+        }
+        System.out.println(String.format("%-10s %6d %14s %13s %12s %12d %14d", path, elapsed.length, Benchmarks.millis(total),
+                Benchmarks.millis(total / elapsed.length), Benchmarks.millis(Benchmarks.percentile(elapsed, 100)), mainLayouts, workerLayouts));
+    }
+}
@@ -0,0 +1,146 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer;
+
+import org.alljoyn.ioe.notificationviewer.pipeline.PipelineMetrics;
+import org.alljoyn.ioe.notificationviewer.pipeline.TextHeightCache;
+
+import android.graphics.Paint;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * Measures how high a card's message text lays out, so the TextView can be
+ * given its minimum height up front. Results are cached by (text hash, width,
+ * paint config), and once the main thread has measured one card the ingest
+ * consumer and the pre-render workers measure the following notifications
+ * ahead of time, each with its own copy of that paint. A recurring message
+ * costs the main thread one cache lookup.
+ */
+class CardTextMeasurer {
+
+    static final String METRIC_HITS = "measure.hits";
+    static final String METRIC_MISSES = "measure.misses";
+    static final String METRIC_PREFETCHED = "measure.prefetched";
+    static final String METRIC_MAIN_NANOS_TOTAL = "measure.mainNanos.total";
+    static final String METRIC_MAIN_NANOS_MAX = "measure.mainNanos.max";
+    static final String METRIC_PREFETCH_NANOS_TOTAL = "measure.prefetchNanos.total";
+
+    private static final int MAX_CACHED = 256;
+
+    /**
+     * Width and a private copy of the paint the main thread last measured with
+     */
+    private static final class Calibration {
+        final int width;
+        final int paintConfig;
+        final TextPaint paint;
+
+        Calibration(int width, int paintConfig, TextPaint paint) {
+            this.width = width;
+            this.paintConfig = paintConfig;
+            this.paint = paint;
+        }
+    }
+
+    private final PipelineMetrics metrics;
+
+    private final TextHeightCache cache = new TextHeightCache(MAX_CACHED);
+
+    private volatile Calibration calibration;
+
+    /**
+     * Each measuring thread's copy of the calibration, a TextPaint must not be shared while laying out
+     */
+    private final ThreadLocal<Calibration> localCalibration = new ThreadLocal<Calibration>();
+
+    CardTextMeasurer(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Main thread only, measuring here recalibrates what the other threads prefetch with
+     *
+     * @return the height the text lays out to in the given width
+     */
+    int getHeight(String text, int width, TextPaint paint) {
+        long start = System.nanoTime();
+        int paintConfig = paintConfig(paint);
+        Calibration current = calibration;
+        if (null == current || current.width != width || current.paintConfig != paintConfig) {
+            calibration = new Calibration(width, paintConfig, new TextPaint(paint));
+        }
+
+        int height = cache.get(text, width, paintConfig);
+        if (height < 0) {
+            metrics.increment(METRIC_MISSES);
+            height = measure(text, width, paint);
+            cache.put(text, width, paintConfig, height);
+        } else {
+            metrics.increment(METRIC_HITS);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        metrics.add(METRIC_MAIN_NANOS_TOTAL, elapsed);
+        metrics.max(METRIC_MAIN_NANOS_MAX, elapsed);
+        return height;
+    }
+
+    /**
+     * Measures the text ahead of its card on the calling thread, does nothing until the main thread measured once. Any thread but the main
+     * thread may call it, each measures with its own copy of the calibration paint.
+     */
+    void prefetch(String text) {
+        Calibration current = calibration;
+        if (null == current || null == text) {
+            return;
+        }
+        Calibration local = localCalibration.get();
+        if (null == local || local.width != current.width || local.paintConfig != current.paintConfig) {
+            // the shared copy is never changed after it is published, so it may be read from here
+            local = new Calibration(current.width, current.paintConfig, new TextPaint(current.paint));
+            localCalibration.set(local);
+        }
+        current = local;
+        if (cache.get(text, current.width, current.paintConfig) >= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        cache.put(text, current.width, current.paintConfig, measure(text, current.width, current.paint));
+        metrics.increment(METRIC_PREFETCHED);
+        metrics.add(METRIC_PREFETCH_NANOS_TOTAL, System.nanoTime() - start);
+    }
+
+    /**
+     * Lays the text out without the cache, for a paint that must not become the calibration
+     *
+     * @return the height the text lays out to in the given width
+     */
+    static int measure(String text, int width, TextPaint paint) {
+        StaticLayout staticLayout = new StaticLayout(text, paint, width, Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
+        return staticLayout.getHeight();
+    }
+
+    private static int paintConfig(Paint paint) {
+        int config = Float.floatToIntBits(paint.getTextSize());
+        config = config * 31 + Float.floatToIntBits(paint.getTextScaleX());
+        config = config * 31 + paint.getFlags();
+        config = config * 31 + (null != paint.getTypeface() ? paint.getTypeface().hashCode() : 0);
+        return config;
+    }
+}
@@ -0,0 +1,122 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer;
+
+import java.util.ArrayDeque;
+
+import org.alljoyn.ioe.notificationviewer.pipeline.PipelineMetrics;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * Bounded pool of inflated notification_toast_layout cards. Cards are taken
+ * when a notification is shown and given back when it expires or is
+ * dismissed, so a steady stream of notifications re-binds the same views
+ * instead of inflating new ones. Only used on the main thread.
+ */
+class NotificationCardPool {
+
+    static final String METRIC_INFLATED = "cards.pool.inflated";
+    static final String METRIC_HITS = "cards.pool.hits";
+    static final String METRIC_MISSES = "cards.pool.misses";
+    static final String METRIC_DISCARDED = "cards.pool.discarded";
+    static final String METRIC_IDLE = "cards.pool.idle";
+
+    /**
+     * An inflated card with its child views already looked up
+     */
+    static final class Card {
+        final View root;
+        final TextView deviceNameTextView;
+        final TextView messageTextView;
+        final ImageView iconImageView;
+
+        Card(View root) {
+            this.root = root;
+            this.deviceNameTextView = (TextView) root.findViewById(R.id.notification_toast_device_name);
+            this.messageTextView = (TextView) root.findViewById(R.id.notification_toast_message);
+            this.iconImageView = (ImageView) root.findViewById(R.id.notification_toast_image);
+        }
+    }
+
+    private final LayoutInflater inflater;
+    private final int maxIdle;
+    private final PipelineMetrics metrics;
+    private final ArrayDeque<Card> idle;
+
+    /**
+     * @param maxIdle cards kept for reuse, 0 disables pooling
+     */
+    NotificationCardPool(LayoutInflater inflater, int maxIdle, PipelineMetrics metrics) {
+        this.inflater = inflater;
+        this.maxIdle = Math.max(0, maxIdle);
+        this.metrics = metrics;
+        this.idle = new ArrayDeque<Card>(Math.max(1, this.maxIdle));
+    }
+
+    /**
+     * Inflates up to count cards ahead of the first notification
+     */
+    void prewarm(int count) {
+        int target = Math.min(count, maxIdle);
+        while (idle.size() < target) {
+            idle.push(inflate());
+        }
+        metrics.set(METRIC_IDLE, idle.size());
+    }
+
+    /**
+     * @return a card that is not attached to any parent
+     */
+    Card acquire() {
+        Card card = idle.poll();
+        if (null != card) {
+            metrics.increment(METRIC_HITS);
+            metrics.set(METRIC_IDLE, idle.size());
+            return card;
+        }
+        metrics.increment(METRIC_MISSES);
+        return inflate();
+    }
+
+    /**
+     * Takes back a card that was removed from its parent
+     */
+    void release(Card card) {
+        if (null != card.root.getParent()) {
+            ((ViewGroup) card.root.getParent()).removeView(card.root);
+        }
+        if (idle.size() >= maxIdle) {
+            metrics.increment(METRIC_DISCARDED);
+            return;
+        }
+        // a late icon for the previous notification must not find this card
+        card.root.setId(View.NO_ID);
+        card.iconImageView.setImageDrawable(null);
+        idle.push(card);
+        metrics.set(METRIC_IDLE, idle.size());
+    }
+
+    private Card inflate() {
+        metrics.increment(METRIC_INFLATED);
+        return new Card(inflater.inflate(R.layout.notification_toast_layout, null));
+    }
+}
@@ -16,27 +16,52 @@
 
 package org.alljoyn.ioe.notificationviewer;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.alljoyn.about.AboutService;
 import org.alljoyn.about.AboutServiceImpl;
 import org.alljoyn.bus.BusAttachment;
 import org.alljoyn.bus.Status;
+import org.alljoyn.ioe.notificationviewer.logic.DeviceManagerImpl;
+import org.alljoyn.ioe.notificationviewer.logic.Interface.Device;
 import org.alljoyn.ioe.notificationviewer.logic.Interface.IntentActions;
+import org.alljoyn.ioe.notificationviewer.pipeline.CatchUpMode;
+import org.alljoyn.ioe.notificationviewer.pipeline.CompactingList;
+import org.alljoyn.ioe.notificationviewer.pipeline.DeviceRateLimiter;
+import org.alljoyn.ioe.notificationviewer.pipeline.DuplicateFilter;
+import org.alljoyn.ioe.notificationviewer.pipeline.IngestQueue;
+import org.alljoyn.ioe.notificationviewer.pipeline.LaneScheduler;
+import org.alljoyn.ioe.notificationviewer.pipeline.NotificationKey;
+import org.alljoyn.ioe.notificationviewer.pipeline.NotificationRecord;
+import org.alljoyn.ioe.notificationviewer.pipeline.PipelineMetrics;
+import org.alljoyn.ioe.notificationviewer.pipeline.PopupTimeoutPolicy;
+import org.alljoyn.ioe.notificationviewer.pipeline.PreRenderPool;
+import org.alljoyn.ioe.notificationviewer.pipeline.ReorderBuffer;
+import org.alljoyn.ioe.notificationviewer.pipeline.TextNormalizer;
+import org.alljoyn.ioe.notificationviewer.pipeline.TimingWheel;
+import org.alljoyn.ioe.notificationviewer.properties.PropertiesManager;
 import org.alljoyn.ioe.notificationviewer.properties.PropertiesManagerFactory;
 import org.alljoyn.ns.Notification;
 import org.alljoyn.ns.NotificationMessageType;
 import org.alljoyn.ns.NotificationReceiver;
 import org.alljoyn.ns.NotificationService;
 import org.alljoyn.ns.NotificationServiceException;
-import org.alljoyn.ns.NotificationText;
 import org.alljoyn.services.common.utils.GenericLogger;
 
 import android.app.NotificationManager;
@@ -49,23 +74,28 @@ import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.PixelFormat;
+import android.graphics.Point;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.Message;
-import android.text.Layout.Alignment;
-import android.text.StaticLayout;
 import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
 import android.view.WindowManager;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -76,6 +106,11 @@ public class NotificationViewer extends Service {
      */
     private static final int MAX_LINES = 4;
 
+    /**
+     * Glyph whose width bounds how many characters fit a card line
+     */
+    private static final String NARROW_GLYPH = "i";
+
     final static String TAG = "TVNotificationViewer";
 
     /**
@@ -92,6 +127,132 @@ public class NotificationViewer extends Service {
 
     private AsyncHandler m_asyncHandler;
 
+    /**
+     * Counters shared by the ingest and rendering stages
+     */
+    private final PipelineMetrics m_metrics = new PipelineMetrics();
+
+    /**
+     * Hand-off between the AllJoyn callback threads and the AsyncHandler
+     */
+    private IngestQueue m_ingestQueue;
+
+    /**
+     * Cleans and caps notification text on the AllJoyn callback threads
+     */
+    private TextNormalizer m_textNormalizer;
+
+    /**
+     * Card text width the normalizer's budget was last derived from, only accessed on the main thread
+     */
+    private int m_textBudgetWidth = -1;
+
+    /**
+     * Drops producer retries and sessionless re-deliveries, only used by the ingest consumer
+     */
+    private DuplicateFilter m_duplicateFilter;
+
+    /**
+     * Limits how many notifications each device may show, only used by the ingest consumer
+     */
+    private DeviceRateLimiter m_rateLimiter;
+
+    /**
+     * Puts each app's notifications back in messageId order, only used by the ingest consumer
+     */
+    private ReorderBuffer m_reorderBuffer;
+
+    /**
+     * Message id of the "N more from device" card, one per appId
+     */
+    private static final int RATE_LIMITED_SUMMARY_MESSAGE_ID = Integer.MIN_VALUE;
+
+    /**
+     * Summarizes the replay of the sessionless cache after connecting, only used by the ingest consumer
+     */
+    private CatchUpMode m_catchUpMode;
+
+    /**
+     * Inflated cards for reuse, only accessed on the main thread
+     */
+    private NotificationCardPool m_cardPool;
+
+    /**
+     * Cards on screen by the id given to their view, only accessed on the main thread
+     */
+    private final SparseArray<CardEntry> m_cardsByViewId = new SparseArray<CardEntry>();
+
+    /**
+     * Cards waiting for room on screen, only accessed on the main thread
+     */
+    private CardOverflow m_cardOverflow;
+
+    /**
+     * How long cards stay on screen, only accessed on the main thread
+     */
+    private PopupTimeoutPolicy m_popupTimeout;
+
+    /**
+     * Stacked cards per device, only accessed on the main thread apart from {@link CardGroups#isEnabled()}
+     */
+    private CardGroups m_cardGroups;
+
+    private static final String CARD_LIST_MODE_VIRTUALIZED = "virtualized";
+
+    /**
+     * Set in the virtualized list mode, where it replaces nonEmergencyNotificationsLayout. Only accessed on the main thread.
+     */
+    private VirtualCardList m_cardList;
+
+    /**
+     * Message text heights, measured ahead by the ingest consumer where possible
+     */
+    private final CardTextMeasurer m_textMeasurer = new CardTextMeasurer(m_metrics);
+
+    /**
+     * Prepares cards off the main thread, striped by appId
+     */
+    private PreRenderPool m_preRenderPool;
+
+    private static final int MAX_CACHED_ICONS = 32;
+
+    /**
+     * Device icons by appId, so a card binds a decoded bitmap instead of reading it from storage. Safe to use from any thread.
+     */
+    private final LruCache<UUID, Bitmap> m_deviceIcons = new LruCache<UUID, Bitmap>(MAX_CACHED_ICONS);
+
+    /**
+     * Message id of the catch-up digest card, one per appId
+     */
+    private static final int CATCH_UP_DIGEST_MESSAGE_ID = Integer.MIN_VALUE + 1;
+
+    /**
+     * Cards that are queued for rendering or on screen, by the key producers use to dismiss them
+     */
+    private final ConcurrentHashMap<NotificationKey, CardEntry> m_cardIndex = new ConcurrentHashMap<NotificationKey, CardEntry>();
+
+    /**
+     * Dismissals of notifications that were neither queued nor shown, with the time they arrived. The notification may still be on its way
+     * through the ingest stages, so it is dropped if it shows up within the TTL.
+     */
+    private final ConcurrentHashMap<NotificationKey, Long> m_earlyDismissals = new ConcurrentHashMap<NotificationKey, Long>();
+
+    private static final long EARLY_DISMISSAL_TTL_IN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long EARLY_DISMISSAL_TTL_IN_MS = TimeUnit.NANOSECONDS.toMillis(EARLY_DISMISSAL_TTL_IN_NANOS);
+
+    /**
+     * Emergency notifications waiting for or shown in emergencyNotificationsLayout
+     */
+    private final EmergencyQueue m_emergencyQueue = new EmergencyQueue();
+
+    static final String METRIC_DISMISS_RECEIVED = "dismiss.received";
+    static final String METRIC_DISMISS_APPLIED = "dismiss.applied";
+    static final String METRIC_DROPPED_MUTED = "ingest.dropped.muted";
+    static final String METRIC_UPDATE_APPLIED = "update.applied";
+    static final String METRIC_UPDATE_UNCHANGED = "update.unchanged";
+    static final String METRIC_UPDATE_REQUEUED = "update.requeued";
+    static final String METRIC_UPDATE_RETYPED = "update.retyped";
+
     private final String m_languageTag = "en";
 
     /* Load the native alljoyn_java library. */
@@ -142,7 +303,26 @@ public class NotificationViewer extends Service {
     private ViewGroup nonEmergencyNotificationsLayout;
     private BroadcastReceiver broadcastReceiver;
 
-    private static final long POST_DELAYED_IN_MS_BEFORE_SCROLL = 500;
+
+    private RenderBatcher m_renderBatcher;
+
+    private static final long EXPIRY_TICK_IN_MS = 100;
+    private static final int EXPIRY_WHEEL_SIZE = 512;
+
+    /**
+     * Expiry of every card and of the emergency notification, only accessed on the main thread
+     */
+    private ExpiryDriver m_expiryDriver;
+
+    /**
+     * Scrolls to the newest card once the overlay settles, only accessed on the main thread
+     */
+    private ScrollScheduler m_scrollScheduler;
+
+    /**
+     * Attaches and sizes the overlay window, only accessed on the main thread
+     */
+    private OverlayWindow m_overlayWindow;
 
     public static final int IGNORE_VIEW_ID = -1;
 
@@ -161,22 +341,53 @@ public class NotificationViewer extends Service {
     public void onCreate() {
         super.onCreate();
 
-        PropertiesManagerFactory.getPropertiesManager().init();
+        PropertiesManager propertiesManager = PropertiesManagerFactory.getPropertiesManager();
+        propertiesManager.init();
+        m_textNormalizer = new TextNormalizer(propertiesManager.getTextMaxChars(), m_metrics);
+        m_preRenderPool = new PreRenderPool(propertiesManager.getPreRenderWorkers(), m_metrics);
+        m_ingestQueue = new IngestQueue(propertiesManager.getIngestQueueCapacity(), IngestQueue.OverflowPolicy.fromString(propertiesManager
+                .getIngestOverflowPolicy()), propertiesManager.getIngestBlockTimeoutInMs(), m_metrics);
+        m_duplicateFilter = new DuplicateFilter(propertiesManager.getDedupWindowInMs(), propertiesManager.getDedupExpectedPerWindow(),
+                propertiesManager.getDedupFalsePositiveRate(), m_metrics);
+        m_rateLimiter = new DeviceRateLimiter(propertiesManager.getRateLimitPerMinute(), propertiesManager.getRateLimitBurst(), m_metrics);
+        m_reorderBuffer = new ReorderBuffer(propertiesManager.getReorderHoldInMs(), m_metrics);
+        m_catchUpMode = new CatchUpMode(propertiesManager.getCatchUpArrivalsPerSecond(), propertiesManager.getCatchUpStartupWindowInMs(),
+                propertiesManager.getCatchUpQuietInMs(), m_metrics);
 
         LayoutInflater inflater = (LayoutInflater) getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         rootNotificationsLayout = inflater.inflate(R.layout.notifications_layout, null);
+        m_cardPool = new NotificationCardPool(inflater, propertiesManager.getCardPoolSize(), m_metrics);
+        m_cardPool.prewarm(propertiesManager.getCardPoolPrewarm());
+        m_cardOverflow = new CardOverflow(propertiesManager.getMaxVisibleCards());
+        m_cardGroups = new CardGroups(propertiesManager.getCardGroupWindowInMs());
+        m_popupTimeout = new PopupTimeoutPolicy(propertiesManager.getNotificationPopupTimeoutInMs(), propertiesManager.getPopupTimeoutMinInMs(),
+                propertiesManager.getPopupTimeoutFullLoadDepth(), propertiesManager.getPopupTimeoutFullLoadArrivalsPerSecond(), m_metrics);
         scrollView = (ScrollView) rootNotificationsLayout.findViewById(R.id.notificationScrollView);
         emergencyNotificationsLayout = (ViewGroup) rootNotificationsLayout.findViewById(R.id.emergencyNotificationLayout);
         nonEmergencyNotificationsLayout = (ViewGroup) rootNotificationsLayout.findViewById(R.id.notificationsLinearLayout);
+        if (CARD_LIST_MODE_VIRTUALIZED.equalsIgnoreCase(propertiesManager.getCardListMode())) {
+            ListView listView = (ListView) rootNotificationsLayout.findViewById(R.id.notificationListView);
+            m_cardList = new VirtualCardList(Choreographer.getInstance(), listView, inflater);
+            listView.setAdapter(m_cardList);
+            listView.setVisibility(View.VISIBLE);
+            scrollView.setVisibility(View.GONE);
+        }
 
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
         WindowManager.LayoutParams params = new WindowManager.LayoutParams(WindowManager.LayoutParams.MATCH_PARENT, WindowManager.LayoutParams.MATCH_PARENT,
                 WindowManager.LayoutParams.TYPE_SYSTEM_OVERLAY,
                 WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, PixelFormat.TRANSPARENT);
 
-        windowManager.addView(rootNotificationsLayout, params);
-
         handler = new Handler(Looper.getMainLooper());
+        // the window is only added once there is something to show
+        m_overlayWindow = new OverlayWindow(params);
+        m_expiryDriver = new ExpiryDriver(new TimingWheel<Runnable>(EXPIRY_TICK_IN_MS, EXPIRY_WHEEL_SIZE, m_metrics));
+        // Choreographer is per-looper, so it must be obtained on the main thread
+        m_renderBatcher = new RenderBatcher(Choreographer.getInstance(), new LaneScheduler<CardEntry>(LaneScheduler.Policy.fromString(propertiesManager
+                .getLanePolicy()), LaneScheduler.parseWeights(propertiesManager.getLaneWeights()), propertiesManager.getLaneMaxWaitInMs(), m_metrics),
+                propertiesManager.getRenderFrameBudgetInMs());
+        m_scrollScheduler = new ScrollScheduler(Choreographer.getInstance(), propertiesManager.getScrollQuietInMs(), propertiesManager
+                .getScrollMaxDelayInMs());
 
         m_androidNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
 
@@ -210,23 +421,27 @@ public class NotificationViewer extends Service {
                             });
                         } else {
                             final int viewId = intent.getIntExtra(IntentActions.EXTRA_VIEW_ID, -1);
+                            m_deviceIcons.remove(appId);
                             if (-1 != viewId) {
-                                final View layout = nonEmergencyNotificationsLayout.findViewById(viewId);
-                                if (null != layout) {
-                                    handler.post(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            try {
-                                                View view = layout.findViewById(R.id.notification_toast_image);
-                                                if (null != view) {
-                                                    UIUtil.setDeviceIcon((ImageView) view, appId, isNotificationWithImage, viewId);
-                                                }
-                                            } catch (Exception e) {
-                                                e.printStackTrace();
-                                            }
+                                handler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (null != m_cardList) {
+                                            m_cardList.notifyDataSetChanged();
+                                            return;
                                         }
-                                    });
-                                }
+                                        // a card that expired or was recycled meanwhile is no longer indexed under this id
+                                        CardEntry entry = m_cardsByViewId.get(viewId);
+                                        if (null == entry || null == entry.card) {
+                                            return;
+                                        }
+                                        try {
+                                            UIUtil.setDeviceIcon(entry.card.iconImageView, appId, isNotificationWithImage, viewId);
+                                        } catch (Exception e) {
+                                            e.printStackTrace();
+                                        }
+                                    }
+                                });
                             }
                         }
                     }
@@ -254,9 +469,10 @@ public class NotificationViewer extends Service {
         /* Disconnect to prevent any resource leaks. */
         m_asyncHandler.shutdown();
         m_asyncHandler.getLooper().quit();
+        m_preRenderPool.shutdown();
 
-        if (null != rootNotificationsLayout) {
-            windowManager.removeView(rootNotificationsLayout);
+        if (null != m_overlayWindow) {
+            m_overlayWindow.destroy();
         }
 
         m_asyncHandler.sendEmptyMessage(AsyncHandler.DISCONNECT);
@@ -270,9 +486,26 @@ public class NotificationViewer extends Service {
 
         public static final int CONNECT = 1;
         public static final int DISCONNECT = 2;
-        public static final int NEW_NOTIFICATION = 3;
+        public static final int DRAIN_NOTIFICATIONS = 3;
         public static final int SIMULATE = 4;
+        public static final int LOG_METRICS = 5;
+        public static final int FLUSH_RATE_LIMITED = 6;
+        public static final int RELEASE_REORDERED = 7;
+        public static final int CHECK_CATCH_UP = 8;
+        public static final int PRUNE_EARLY_DISMISSALS = 9;
         private static final String SESSIONLESS_MATCH_RULE = "sessionless='t',type='error'";
+        private static final long METRICS_LOG_INTERVAL_IN_MS = 60 * 1000;
+        private static final long RATE_LIMITED_SUMMARY_DELAY_IN_MS = 1000;
+
+        /**
+         * Set while a DRAIN_NOTIFICATIONS message is pending, so a burst of receive() calls posts a single message
+         */
+        private final AtomicBoolean m_drainScheduled = new AtomicBoolean(false);
+
+        /**
+         * Records released by the reorder buffer, reused by every drain
+         */
+        private final List<NotificationRecord> m_released = new ArrayList<NotificationRecord>();
 
         public AsyncHandler(Looper looper) {
             super(looper);
@@ -294,12 +527,29 @@ public class NotificationViewer extends Service {
                 break;
             }
 
-            case NEW_NOTIFICATION: {
-
-                Notification notification = (Notification) msg.obj;
-                // showNotification(notification);
-                // showToast(notification);
-                showNotificationNew(notification);
+            case DRAIN_NOTIFICATIONS: {
+                drainNotifications();
+                break;
+            }
+            case RELEASE_REORDERED: {
+                releaseReordered();
+                break;
+            }
+            case CHECK_CATCH_UP: {
+                checkCatchUp();
+                break;
+            }
+            case FLUSH_RATE_LIMITED: {
+                flushRateLimited();
+                break;
+            }
+            case PRUNE_EARLY_DISMISSALS: {
+                pruneEarlyDismissals();
+                break;
+            }
+            case LOG_METRICS: {
+                logger.info(TAG, m_metrics.toString());
+                sendEmptyMessageDelayed(LOG_METRICS, METRICS_LOG_INTERVAL_IN_MS);
                 break;
             }
             case SIMULATE: {
@@ -342,6 +592,7 @@ public class NotificationViewer extends Service {
 
             /* Initialize NotificationService */
             notificationService = NotificationService.getInstance();
+            m_catchUpMode.start(System.nanoTime());
             try {
                 notificationService.initReceive(bus, this);
             } catch (NotificationServiceException nse) {
@@ -356,6 +607,7 @@ public class NotificationViewer extends Service {
             logger.info(TAG, "BusAttachment.addMatch() status = " + s);
             Toast.makeText(getApplicationContext(), getString(R.string.toast_init_success), Toast.LENGTH_LONG).show();
 
+            sendEmptyMessageDelayed(LOG_METRICS, METRICS_LOG_INTERVAL_IN_MS);
         }
 
         // ------------------------ Disconnect --------------------------------
@@ -388,29 +640,312 @@ public class NotificationViewer extends Service {
             }
         }
 
+        /**
+         * Runs on the AllJoyn callback thread, so only publishes to the ingest queue
+         */
         @Override
         public void receive(Notification notification) {
-            logger.debug(
-                    TAG,
-                    String.format(
-                            "Received new Notification, Id: '%s', MessageType: '%s' DeviceId: '%s', DeviceName: '%s', CustomAvPairs: '%s', FirstMsgLang: '%s', FirstMsg: '%s'",
-                            notification.getMessageId(), notification.getMessageType(), notification.getDeviceId(), notification.getDeviceName(), notification
-                                    .getCustomAttributes().toString(), notification.getText().get(0).getLanguage(), notification.getText().get(0).getText()));
+            if (isMuted(notification.getAppId())) {
+                m_metrics.increment(METRIC_DROPPED_MUTED);
+                return;
+            }
+            if (m_ingestQueue.publish(NotificationRecord.from(notification, m_languageTag, m_textNormalizer)) && m_drainScheduled.compareAndSet(false, true)) {
+                sendEmptyMessage(DRAIN_NOTIFICATIONS);
+            }
+        }
+
+        /**
+         * A device the user turned notifications off for, looked up by appId without leaving the callback thread
+         */
+        private boolean isMuted(UUID appId) {
+            Device device = UIUtil.getDevice(appId);
+            return null != device && !device.isNotificationOn();
+        }
+
+        /**
+         * Single consumer of the ingest queue
+         */
+        private void drainNotifications() {
+            // cleared before draining, so a publish racing with the last poll() schedules a new drain
+            m_drainScheduled.set(false);
+            NotificationRecord notification;
+            while (null != (notification = m_ingestQueue.poll())) {
+                logger.debug(TAG, "Received new Notification, " + notification);
+
+                boolean duplicate = m_duplicateFilter.isDuplicate(notification.getAppId(), notification.getMessageId(), notification.getMessageType());
+                if (takeDownRetyped(notification)) {
+                    // shown again as a new notification of its new type
+                    duplicate = false;
+                } else if (updateInPlace(notification)) {
+                    continue;
+                }
+                if (duplicate) {
+                    logger.debug(TAG, "Dropping duplicate notification, Id: '" + notification.getMessageId() + "', AppId: '" + notification.getAppId() + "'");
+                    continue;
+                }
+                m_catchUpMode.onArrival(System.nanoTime());
+                m_reorderBuffer.offer(notification, System.nanoTime(), m_released);
+            }
+            releaseReordered();
+        }
+
+        /**
+         * Takes down the card a notification was re-sent for with another type, as dismiss() would. The lane, grouping and look of a card
+         * depend on its type, so it is not updated in place.
+         *
+         * @return true if a card was taken down
+         */
+        private boolean takeDownRetyped(NotificationRecord notification) {
+            if (m_cardIndex.isEmpty()) {
+                return false;
+            }
+            NotificationKey key = new NotificationKey(notification.getAppId(), notification.getMessageId());
+            CardEntry entry = m_cardIndex.get(key);
+            if (null == entry || entry.dismissed || notification.getMessageType() == entry.messageType) {
+                return false;
+            }
+            m_metrics.increment(METRIC_UPDATE_RETYPED);
+            return applyDismiss(key);
+        }
+
+        /**
+         * A notification re-sent under the id of a card that is queued or on screen, with the same type, updates that card instead of adding
+         * one. It skips the reorder buffer, catch-up and the rate limiter, as it does not add to what is shown.
+         *
+         * @return true if the notification was taken as an update
+         */
+        private boolean updateInPlace(NotificationRecord notification) {
+            if (m_cardIndex.isEmpty()) {
+                return false;
+            }
+            final NotificationKey key = new NotificationKey(notification.getAppId(), notification.getMessageId());
+            final CardEntry entry = m_cardIndex.get(key);
+            if (null == entry || entry.dismissed) {
+                return false;
+            }
+            final String text = notification.getText();
+            m_textMeasurer.prefetch(text);
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateCard(entry, key, text);
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Shows the records the reorder buffer released and schedules the next release
+         */
+        private void releaseReordered() {
+            m_reorderBuffer.releaseExpired(System.nanoTime(), m_released);
+            for (NotificationRecord notification : m_released) {
+                if (takeEarlyDismissal(new NotificationKey(notification.getAppId(), notification.getMessageId()))) {
+                    logger.debug(TAG, "Dropping notification dismissed before it was shown, Id: '" + notification.getMessageId() + "'");
+                    m_metrics.increment(METRIC_DISMISS_APPLIED);
+                    continue;
+                }
+                if (m_catchUpMode.isActive() && NotificationMessageType.EMERGENCY != notification.getMessageType()) {
+                    m_catchUpMode.digest(notification);
+                    continue;
+                }
+                if (!m_rateLimiter.tryAcquire(notification.getAppId(), notification.getDeviceId(), notification.getDeviceName(),
+                        notification.getMessageType())) {
+                    continue;
+                }
+
+                // showNotification(notification);
+                // showToast(notification);
+                showNotificationNew(notification);
+            }
+            m_released.clear();
+
+            removeMessages(RELEASE_REORDERED);
+            long nanosUntilRelease = m_reorderBuffer.nanosUntilNextRelease(System.nanoTime());
+            if (nanosUntilRelease >= 0) {
+                sendEmptyMessageDelayed(RELEASE_REORDERED, TimeUnit.NANOSECONDS.toMillis(nanosUntilRelease) + 1);
+            }
+
+            checkCatchUp();
+            if (m_rateLimiter.hasSuppressed() && !hasMessages(FLUSH_RATE_LIMITED)) {
+                sendEmptyMessageDelayed(FLUSH_RATE_LIMITED, RATE_LIMITED_SUMMARY_DELAY_IN_MS);
+            }
+        }
+
+        /**
+         * Shows the digests once catch-up ended, otherwise checks again when it may end
+         */
+        private void checkCatchUp() {
+            long now = System.nanoTime();
+            if (m_catchUpMode.checkEnded(now)) {
+                for (CatchUpMode.Digest digest : m_catchUpMode.takeDigests()) {
+                    showSummaryCard(digest.appId, digest.deviceName, CATCH_UP_DIGEST_MESSAGE_ID, R.string.notification_catch_up_digest, digest.count,
+                            digest.latestText);
+                }
+                return;
+            }
+            long nanosUntilCheck = m_catchUpMode.nanosUntilCheck(now);
+            if (nanosUntilCheck >= 0 && !hasMessages(CHECK_CATCH_UP)) {
+                sendEmptyMessageDelayed(CHECK_CATCH_UP, TimeUnit.NANOSECONDS.toMillis(nanosUntilCheck) + 1);
+            }
+        }
+
+        /**
+         * Shows one summary card per rate limited device, or adds to the one already showing
+         */
+        private void flushRateLimited() {
+            for (DeviceRateLimiter.Suppressed suppressed : m_rateLimiter.takeSuppressed()) {
+                showSummaryCard(suppressed.appId, suppressed.deviceName, RATE_LIMITED_SUMMARY_MESSAGE_ID, R.string.notification_rate_limited_summary,
+                        suppressed.count, null);
+            }
+        }
+
+        /**
+         * Shows a card that stands for count notifications of one device, or adds to the one already showing
+         *
+         * @param formatResId format taking the count, the device name and the detail
+         */
+        private void showSummaryCard(final UUID appId, final String name, int summaryMessageId, final int formatResId, final int count,
+                final String detail) {
+            final String deviceName = (null != name) ? name : String.valueOf(appId);
+            final NotificationKey key = new NotificationKey(appId, summaryMessageId);
+
+            final CardEntry existing = m_cardIndex.get(key);
+            if (null != existing && !existing.dismissed) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the card may have expired or been dismissed since it was looked up
+                        CardEntry entry = existing;
+                        if (entry.removed || entry.dismissed) {
+                            CardEntry indexed = m_cardIndex.get(key);
+                            if (null == indexed || indexed == existing || indexed.removed || indexed.dismissed) {
+                                enqueueSummaryCard(key, appId, deviceName, getString(formatResId, count, deviceName, detail), count);
+                                return;
+                            }
+                            entry = indexed;
+                        }
+                        entry.summaryCount += count;
+                        entry.text = getString(formatResId, entry.summaryCount, deviceName, detail);
+                        refreshCard(entry);
+                    }
+                });
+                return;
+            }
+
+            String text = getString(formatResId, count, deviceName, detail);
+            m_textMeasurer.prefetch(text);
+            enqueueSummaryCard(key, appId, deviceName, text, count);
+        }
+
+        /**
+         * Any thread, the text is not measured ahead
+         */
+        private void enqueueSummaryCard(NotificationKey key, UUID appId, String deviceName, String text, int count) {
+            CardEntry entry = new CardEntry(key, appId, NotificationMessageType.INFO, deviceName, text, false);
+            entry.summaryCount = count;
+            m_cardIndex.put(key, entry);
+            m_renderBatcher.enqueue(entry);
+        }
+
+        private void pruneEarlyDismissals() {
+            long now = System.nanoTime();
+            Iterator<Long> it = m_earlyDismissals.values().iterator();
+            while (it.hasNext()) {
+                if (now - it.next() > EARLY_DISMISSAL_TTL_IN_NANOS) {
+                    it.remove();
+                }
+            }
+            if (!m_earlyDismissals.isEmpty()) {
+                schedulePruneEarlyDismissals();
+            }
+        }
 
-            sendMessage(obtainMessage(NEW_NOTIFICATION, notification));
+        /**
+         * Any thread
+         */
+        private void schedulePruneEarlyDismissals() {
+            if (!hasMessages(PRUNE_EARLY_DISMISSALS)) {
+                sendEmptyMessageDelayed(PRUNE_EARLY_DISMISSALS, EARLY_DISMISSAL_TTL_IN_MS);
+            }
         }
 
+        /**
+         * Runs on the AllJoyn callback thread. Every branch is a constant time lookup.
+         */
         @Override
         public void dismiss(int notifId, UUID appId) {
-            Log.d(TAG, " !!!!! DISMISS RECEIVED !!!! : '" + notifId + "', appId: '" + appId + "'");
+            Log.d(TAG, "Dismiss received, Id: '" + notifId + "', appId: '" + appId + "'");
+            m_metrics.increment(METRIC_DISMISS_RECEIVED);
+
+            NotificationKey key = new NotificationKey(appId, notifId);
+            if (applyDismiss(key)) {
+                return;
+            }
+            m_earlyDismissals.put(key, System.nanoTime());
+            // the consumer registers a notification before it looks for its early dismissal, so checking again after recording it means
+            // one of the two sides always sees the other
+            if (applyDismiss(key)) {
+                m_earlyDismissals.remove(key);
+                return;
+            }
+            schedulePruneEarlyDismissals();
+        }
+
+        /**
+         * @return true if the key belongs to a card or an emergency notification that is queued or shown, which is then taken down
+         */
+        private boolean applyDismiss(final NotificationKey key) {
+            final CardEntry entry = m_cardIndex.remove(key);
+            if (null != entry && entry.groupable) {
+                // other notifications may be stacked on the card, so only the main thread can tell whether it goes away
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!m_cardGroups.dismiss(entry, key)) {
+                            entry.dismissed = true;
+                            removeCard(entry);
+                        }
+                    }
+                });
+            } else if (null != entry) {
+                // a queued entry is skipped by the RenderBatcher, a rendered one is removed
+                entry.dismissed = true;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        removeCard(entry);
+                    }
+                });
+            } else if (m_emergencyQueue.unregister(key)) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        m_emergencyQueue.dismiss(key);
+                    }
+                });
+            } else {
+                return false;
+            }
+            m_metrics.increment(METRIC_DISMISS_APPLIED);
+            return true;
         }
     }
 
+    /**
+     * Called by the ingest consumer once the notification is registered, see {@link AsyncHandler#dismiss(int, UUID)}
+     *
+     * @return true if the notification was dismissed before it got this far
+     */
+    private boolean takeEarlyDismissal(NotificationKey key) {
+        return !m_earlyDismissals.isEmpty() && null != m_earlyDismissals.remove(key);
+    }
+
     private int m_notifId = 0;
 
-    private void showNotification(Notification notification) {
+    private void showNotification(NotificationRecord notification) {
         android.app.Notification taskbarNotification = new android.app.Notification.Builder(this).setContentTitle(notification.getDeviceName())
-                .setContentText(getLocalizedText(notification.getText())).setSmallIcon(R.drawable.ajnv_notify_icon)
+                .setContentText(notification.getText()).setSmallIcon(R.drawable.ajnv_notify_icon)
                 // Dummy intent, because we have no Activity to launch
                 .setContentIntent(PendingIntent.getActivity(this, 0, new Intent(), 0))
                 // not opening anything. So a click on the notification should dismiss it, otherwise who would
@@ -419,7 +954,7 @@ public class NotificationViewer extends Service {
         m_androidNotificationManager.notify(m_notifId++, taskbarNotification);
     }
 
-    private void showNotificationNew(final Notification notification) {
+    private void showNotificationNew(final NotificationRecord notification) {
         NotificationMessageType messageType = notification.getMessageType();
         switch (messageType) {
         case EMERGENCY:
@@ -444,220 +979,1509 @@ public class NotificationViewer extends Service {
         return retval;
     }
 
-    private void showNotificationWithImage(final Notification notification) {
+    private void showNotificationWithImage(NotificationRecord notification) {
+        Log.i(TAG, "showNotificationWithImage - url: " + notification.getRichIconUrl());
+        final EmergencyAlert alert = new EmergencyAlert(new NotificationKey(notification.getAppId(), notification.getMessageId()),
+                notification.getAppId(), notification.getDeviceName(), notification.getText(), notification.getRichIconUrl());
+        // known from here on, so a dismiss that races the post below still finds it
+        m_emergencyQueue.register(alert);
+        if (takeEarlyDismissal(alert.key) && m_emergencyQueue.unregister(alert.key)) {
+            m_metrics.increment(METRIC_DISMISS_APPLIED);
+            return;
+        }
         handler.post(new Runnable() {
             @Override
             public void run() {
-                String deviceName = notification.getDeviceName();
-                CharSequence notificationText = getLocalizedText(notification.getText());
-                String richIconUrl = notification.getRichIconUrl();
-
-                Log.i(TAG, "showNotificationWithImage - url: " + richIconUrl);
-
-                TextView deviceNameTextView = (TextView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_title_bar_device_name);
-                deviceNameTextView.setText(deviceName);
-
-                ImageView notificationIconImageView = (ImageView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_title_bar_about_image);
-
-                // repurpose the richIconUrl for use with the notification image view
-                if (shouldShowNotificationWithImage(richIconUrl)) {
-                    TextView emergencyNotificationMessageTextView = (TextView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_message);
-                    emergencyNotificationMessageTextView.setText(notificationText);
-
-                    ImageView emergencyNotificationImageView = (ImageView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_image);
-                    new SetImageBitmapTask(emergencyNotificationImageView, richIconUrl).execute();
-                }
-
-                UIUtil.setDeviceIcon(notificationIconImageView, notification.getAppId(), true, IGNORE_VIEW_ID);
+                m_emergencyQueue.enqueue(alert);
             }
         });
-
     }
 
-    private void showNotificationWithoutImage(final Notification notification) {
-        final int viewId = generateViewId();
+    private void showNotificationWithoutImage(final NotificationRecord notification) {
+        boolean groupable = m_cardGroups.isEnabled() && NotificationMessageType.EMERGENCY != notification.getMessageType();
+        CardEntry entry = new CardEntry(new NotificationKey(notification.getAppId(), notification.getMessageId()), notification.getAppId(),
+                notification.getMessageType(), notification.getDeviceName(), notification.getText(), groupable);
+        m_cardIndex.put(entry.key, entry);
+        if (takeEarlyDismissal(entry.key) && m_cardIndex.remove(entry.key, entry)) {
+            m_metrics.increment(METRIC_DISMISS_APPLIED);
+            return;
+        }
+        if (NotificationMessageType.EMERGENCY == entry.messageType) {
+            // not queued behind the device's other cards on its pre-render worker, the main thread measures it and looks its icon up
+            m_renderBatcher.enqueue(entry);
+            return;
+        }
+        m_preRenderPool.execute(entry.appId, new PreRender(entry, notification.getText()));
+    }
 
-        handler.post(new Runnable() {
-            @Override
-            public void run() {
-                String deviceName = notification.getDeviceName();
-                CharSequence notificationText = getLocalizedText(notification.getText());
+    /**
+     * A notification card from the time it is queued for rendering until it expires or is dismissed
+     */
+    private static final class CardEntry {
+        final NotificationKey key;
+        final UUID appId;
+        final String deviceName;
 
-                LayoutInflater inflater = (LayoutInflater) getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-                final View layout = inflater.inflate(R.layout.notification_toast_layout, null);
+        /**
+         * Decides the lane, grouping and look of the card, so a re-send of another type replaces the card instead of updating it
+         */
+        final NotificationMessageType messageType;
 
-                // set the device name
-                TextView deviceNameTextView = (TextView) layout.findViewById(R.id.notification_toast_device_name);
-                deviceNameTextView.setText(deviceName);
+        /**
+         * Other notifications of the device may be stacked on this card, see {@link CardGroups}
+         */
+        final boolean groupable;
 
-                // set the text
-                TextView messageTextView = (TextView) layout.findViewById(R.id.notification_toast_message);
-                messageTextView.setText(notificationText);
+        /**
+         * Set by dismiss(), so a queued entry is never rendered
+         */
+        volatile boolean dismissed;
 
-                String notificationTextString = "";
-                if (null != notificationText) {
-                    notificationTextString = notificationText.toString();
-                }
-                logger.debug(TAG, "notificationTextString: " + notificationTextString);
+        /**
+         * Found by the pre-render stage, null if it was not looked up
+         */
+        Bitmap icon;
+
+        // only accessed on the main thread once the entry is queued
+        CharSequence text;
+        int summaryCount;
+        NotificationCardPool.Card card;
+        int viewId = IGNORE_VIEW_ID;
+        TimingWheel.Timeout<Runnable> expiry;
+        long listSequence = -1;
+        boolean overflowed;
+        boolean removed;
+
+        // set once the card leads a group
+        long groupStartedAt;
+        int groupCount;
+        ArrayDeque<GroupItem> history;
+
+        CardEntry(NotificationKey key, UUID appId, NotificationMessageType messageType, String deviceName, CharSequence text, boolean groupable) {
+            this.key = key;
+            this.appId = appId;
+            this.messageType = messageType;
+            this.deviceName = deviceName;
+            this.text = text;
+            this.groupable = groupable;
+        }
+    }
 
-                // === precalc the number of lines ===
-                // need to do this preprocessing, so that text view expands to 4 lines
+    /**
+     * One notification stacked on a group card
+     */
+    private static final class GroupItem {
+        final NotificationKey key;
+        CharSequence text;
 
-                // find the space that the toast's layout allows the text view
-                layout.measure(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+        GroupItem(NotificationKey key, CharSequence text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
 
-                int maxWidth = messageTextView.getMeasuredWidth();
-                logger.debug(TAG, "maxWidth=" + maxWidth);
+    /**
+     * Stacks notifications from one device onto a single card. The first notification of a device opens a group for the configured window;
+     * later ones of the same type within the window are merged into its card instead of getting their own: the card title shows how many
+     * there were, the text lists the latest ones, newest first, as far as the card's lines go, and the expiry starts over. So the number of
+     * views follows the number of active devices rather than the message volume. Only accessed on the main thread, except
+     * {@link #isEnabled()}.
+     */
+    private class CardGroups {
+        static final String METRIC_OPENED = "group.opened";
+        static final String METRIC_MERGED = "group.merged";
 
-                // simulate a layout, so that we can predict the final TextView height
-                TextPaint textPaint = messageTextView.getPaint();
-                StaticLayout staticLayout = new StaticLayout(notificationTextString, textPaint, maxWidth, Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
-                int minHeight = staticLayout.getHeight();
-                int maxHeight = (int) (MAX_LINES * (textPaint.descent() - textPaint.ascent()));
-                logger.debug(TAG, "minHeight=" + minHeight);
+        /**
+         * Texts kept per group, no more fit the card anyway
+         */
+        private static final int MAX_HISTORY = MAX_LINES;
 
-                // assign a minimum height to the TextView, according to simulation result
-                messageTextView.setMinHeight(Math.min(maxHeight, minHeight)); // a too high minimum, will pass the 4 lines limit.
-                messageTextView.setMaxLines(MAX_LINES);
+        private final long windowNanos;
+        private final HashMap<UUID, CardEntry> groups = new HashMap<UUID, CardEntry>();
 
-                // === end precalc the number of lines ===
+        CardGroups(long windowInMs) {
+            this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowInMs);
+        }
 
-                ImageView notificationIconImageView = (ImageView) layout.findViewById(R.id.notification_toast_image);
-                layout.setId(viewId);
+        /**
+         * Any thread
+         */
+        boolean isEnabled() {
+            return windowNanos > 0;
+        }
 
-                nonEmergencyNotificationsLayout.addView(layout, nonEmergencyNotificationsLayout.getChildCount());
-                UIUtil.setDeviceIcon(notificationIconImageView, notification.getAppId(), false, viewId);
+        /**
+         * Makes a card that was just shown the group of its device
+         */
+        void open(CardEntry entry) {
+            if (!entry.groupable || null == entry.appId) {
+                return;
             }
-        });
-        new DisplayNotificationTask().execute((long) viewId, System.currentTimeMillis());
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                scrollView.fullScroll(View.FOCUS_DOWN);
+            entry.groupStartedAt = System.nanoTime();
+            groups.put(entry.appId, entry);
+            m_metrics.increment(METRIC_OPENED);
+        }
+
+        /**
+         * @return true if the entry was stacked on the open group of its device, or was dismissed meanwhile, and needs no card of its own
+         */
+        boolean merge(CardEntry entry) {
+            if (!entry.groupable || null == entry.appId) {
+                return false;
+            }
+            CardEntry group = groups.get(entry.appId);
+            if (null == group || group.messageType != entry.messageType || System.nanoTime() - group.groupStartedAt >= windowNanos) {
+                return false;
+            }
+            // from now on a dismiss of this notification finds the group
+            if (!m_cardIndex.replace(entry.key, entry, group)) {
+                return true;
+            }
+
+            if (null == group.history) {
+                group.history = new ArrayDeque<GroupItem>(MAX_HISTORY + 1);
+                group.history.add(new GroupItem(group.key, group.text));
+                group.groupCount = 1;
+            }
+            group.history.addFirst(new GroupItem(entry.key, entry.text));
+            group.groupCount++;
+            if (group.history.size() > MAX_HISTORY) {
+                // no longer on the card, so there is nothing left to dismiss
+                m_cardIndex.remove(group.history.removeLast().key, group);
+            }
+            update(group);
+            restartExpiry(group);
+            m_metrics.increment(METRIC_MERGED);
+            return true;
+        }
+
+        /**
+         * Takes a dismissed notification off its card
+         *
+         * @return true if other notifications are left on the card, false if the whole card should go
+         */
+        boolean dismiss(CardEntry entry, NotificationKey key) {
+            if (null == entry.history) {
+                return false;
+            }
+            Iterator<GroupItem> iterator = entry.history.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().key.equals(key)) {
+                    iterator.remove();
+                    if (entry.history.isEmpty()) {
+                        return false;
+                    }
+                    entry.groupCount--;
+                    update(entry);
+                    break;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Replaces the text of a notification stacked on the card
+         *
+         * @return false if the notification is no longer on the card
+         */
+        boolean replace(CardEntry entry, NotificationKey key, CharSequence text) {
+            if (null == entry.history) {
+                return false;
+            }
+            for (GroupItem item : entry.history) {
+                if (item.key.equals(key)) {
+                    if (!TextUtils.equals(item.text, text)) {
+                        item.text = text;
+                        update(entry);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Forgets the group of a card that goes away
+         */
+        void close(CardEntry entry) {
+            if (null == entry.appId || entry != groups.get(entry.appId)) {
+                return;
+            }
+            groups.remove(entry.appId);
+            if (null != entry.history) {
+                for (GroupItem item : entry.history) {
+                    m_cardIndex.remove(item.key, entry);
+                }
+            }
+        }
+
+        private void update(CardEntry group) {
+            StringBuilder text = new StringBuilder();
+            for (GroupItem item : group.history) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(item.text);
+            }
+            group.text = text.toString();
+            if (!group.overflowed) {
+                refreshCard(group);
+            }
+        }
+    }
+
+    /**
+     * Applies a notification that was re-sent under the key of the entry with the same type: the text is rebound and the expiry starts
+     * over, with nothing inflated, laid out from scratch or fetched. An entry that went away meanwhile is shown again as a new card. Must
+     * run on the main thread.
+     */
+    private void updateCard(CardEntry entry, NotificationKey key, CharSequence text) {
+        if (entry.dismissed) {
+            return;
+        }
+        if (entry.removed) {
+            CardEntry replacement = new CardEntry(key, entry.appId, entry.messageType, entry.deviceName, text, entry.groupable);
+            if (m_cardIndex.replace(key, entry, replacement)) {
+                m_renderBatcher.enqueue(replacement);
+                m_metrics.increment(METRIC_UPDATE_REQUEUED);
+            }
+            return;
+        }
+
+        if (null != entry.history) {
+            if (!m_cardGroups.replace(entry, key, text)) {
+                return;
+            }
+        } else if (TextUtils.equals(text, entry.text)) {
+            m_metrics.increment(METRIC_UPDATE_UNCHANGED);
+            return;
+        } else {
+            entry.text = text;
+            refreshCard(entry);
+        }
+        restartExpiry(entry);
+        m_metrics.increment(METRIC_UPDATE_APPLIED);
+    }
+
+    /**
+     * Starts the expiry of a card on screen over. Must run on the main thread.
+     */
+    private void restartExpiry(CardEntry entry) {
+        if (null != entry.expiry) {
+            m_expiryDriver.cancel(entry.expiry);
+            entry.expiry = m_expiryDriver.schedule(new CardExpiration(entry), popupTimeoutInMs(entry));
+        }
+    }
+
+    /**
+     * Rebinds the title and text of a card that may be on screen. Must run on the main thread.
+     */
+    private void refreshCard(CardEntry entry) {
+        if (null != entry.card) {
+            entry.card.deviceNameTextView.setText(cardTitle(entry));
+            entry.card.messageTextView.setText(entry.text);
+        } else if (null != m_cardList) {
+            m_cardList.notifyDataSetChanged();
+        }
+        m_overlayWindow.requestUpdate();
+    }
+
+    private CharSequence cardTitle(CardEntry entry) {
+        return (entry.groupCount > 1) ? getString(R.string.notification_group_title, entry.deviceName, entry.groupCount) : entry.deviceName;
+    }
+
+    /**
+     * Removes the card from the overlay and cancels its expiry. Must run on the main thread.
+     */
+    private void removeCard(CardEntry entry) {
+        entry.removed = true;
+        m_cardGroups.close(entry);
+        if (entry.dismissed && IGNORE_VIEW_ID != entry.viewId && null != entry.appId) {
+            // an icon fetch queued for this card is of no use anymore, the next card of the device queues it again
+            DeviceManagerImpl.getInstance().cancelDeviceImage(entry.appId, entry.viewId);
+        }
+        if (null != entry.expiry) {
+            m_expiryDriver.cancel(entry.expiry);
+            entry.expiry = null;
+        }
+        if (entry.overflowed) {
+            m_cardOverflow.remove(entry);
+            m_cardOverflow.updateSummary();
+            m_overlayWindow.requestUpdate();
+            return;
+        }
+        boolean detached = false;
+        if (null != entry.card) {
+            nonEmergencyNotificationsLayout.removeView(entry.card.root);
+            m_cardsByViewId.remove(entry.viewId);
+            // the pool clears the id, so any icon that arrives later finds no view for it and is ignored
+            m_cardPool.release(entry.card);
+            entry.card = null;
+            detached = true;
+        } else if (null != m_cardList) {
+            detached = m_cardList.remove(entry);
+        }
+        if (detached) {
+            m_scrollScheduler.requestScroll();
+
+            CardEntry restored;
+            while (null != (restored = m_cardOverflow.pollRestorable())) {
+                showCard(restored);
             }
-        }, POST_DELAYED_IN_MS_BEFORE_SCROLL);
+            m_cardOverflow.updateSummary();
+            m_overlayWindow.requestUpdate();
+        }
     }
 
-    private class MakeEmergencyNotificationInvisibleTask extends AsyncTask<Long, Void, Void> {
+    /**
+     * Virtualized card list, a ListView adapter over the cards on screen. Only the rows that fit on screen have views, and rows are recycled
+     * by view type, notification card or the "+N more" card, so memory and layout cost do not grow with the number of cards. Rows are bound
+     * far more often than cards are added, so device icons come from the shared cache. A removed card leaves a hole in its row, and the holes
+     * are closed once per frame, before layout, with a single change notification however many cards expired. Only accessed on the main
+     * thread.
+     */
+    private class VirtualCardList extends BaseAdapter implements Choreographer.FrameCallback {
+        static final String METRIC_ROWS_CREATED = "list.rows.created";
+        static final String METRIC_ROWS_BOUND = "list.rows.bound";
+        static final String METRIC_ENTRIES_MAX = "list.entries.max";
+
+        private static final int VIEW_TYPE_CARD = 0;
+        private static final int VIEW_TYPE_OVERFLOW = 1;
+
+        private final Choreographer choreographer;
+        private final ListView listView;
+        private final LayoutInflater inflater;
+        private final CompactingList<CardEntry> entries = new CompactingList<CardEntry>();
+        private boolean compactionScheduled;
+        private String overflowText;
+
+        VirtualCardList(Choreographer choreographer, ListView listView, LayoutInflater inflater) {
+            this.choreographer = choreographer;
+            this.listView = listView;
+            this.inflater = inflater;
+        }
+
+        void add(CardEntry entry) {
+            entry.listSequence = entries.add(entry);
+            m_metrics.max(METRIC_ENTRIES_MAX, entries.size());
+            notifyDataSetChanged();
+        }
+
+        /**
+         * @return true if the entry was in the list
+         */
+        boolean remove(CardEntry entry) {
+            if (entry.listSequence < 0 || !entries.remove(entry.listSequence)) {
+                return false;
+            }
+            entry.listSequence = -1;
+            if (!compactionScheduled) {
+                compactionScheduled = true;
+                choreographer.postFrameCallback(this);
+            }
+            return true;
+        }
 
         @Override
-        protected Void doInBackground(Long... params) {
-            if (null != params && params.length > 0) {
-                long startTime = params[0];
-                try {
-                    Thread.sleep(getSleepTime(startTime, PropertiesManagerFactory.getPropertiesManager().getNotificationFullscreenAlertTimeoutInMs()));
-                } catch (InterruptedException e) {
-                }
+        public void doFrame(long frameTimeNanos) {
+            compactionScheduled = false;
+            entries.compact();
+            notifyDataSetChanged();
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        /**
+         * @param text of the "+N more" row, null removes it
+         */
+        void setOverflowText(String text) {
+            if (null == text ? null == overflowText : text.equals(overflowText)) {
+                return;
             }
+            overflowText = text;
+            notifyDataSetChanged();
+        }
+
+        void scrollToNewest() {
+            if (getCount() > 0) {
+                listView.setSelection(getCount() - 1);
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return entries.slotCount() + ((null != overflowText) ? 1 : 0);
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return (position < entries.slotCount()) ? entries.get(position) : overflowText;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public int getViewTypeCount() {
+            return 2;
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return (position < entries.slotCount()) ? VIEW_TYPE_CARD : VIEW_TYPE_OVERFLOW;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            NotificationCardPool.Card card;
+            if (null == convertView) {
+                card = new NotificationCardPool.Card(inflater.inflate(R.layout.notification_toast_layout, parent, false));
+                card.root.setTag(card);
+                card.messageTextView.setMaxLines(MAX_LINES);
+                m_metrics.increment(METRIC_ROWS_CREATED);
+            } else {
+                card = (NotificationCardPool.Card) convertView.getTag();
+            }
+            m_metrics.increment(METRIC_ROWS_BOUND);
+
+            if (VIEW_TYPE_OVERFLOW == getItemViewType(position)) {
+                card.deviceNameTextView.setText("");
+                card.messageTextView.setText(overflowText);
+                card.iconImageView.setImageResource(R.drawable.my_devices_icon_reg);
+                return card.root;
+            }
+
+            // rows are measured by the ListView at their real width, so the text needs no precalculated height here
+            CardEntry entry = entries.get(position);
+            if (null == entry) {
+                // a hole is only laid out if layout runs before this frame's compaction
+                card.deviceNameTextView.setText("");
+                card.messageTextView.setText("");
+                card.iconImageView.setImageDrawable(null);
+                return card.root;
+            }
+            card.deviceNameTextView.setText(cardTitle(entry));
+            card.messageTextView.setText(entry.text);
+            bindIcon(card.iconImageView, entry);
+            return card.root;
+        }
+
+        private void bindIcon(ImageView imageView, CardEntry entry) {
+            Bitmap icon = lookupDeviceIcon(entry.appId, entry.viewId);
+            if (null != icon) {
+                imageView.setImageBitmap(icon);
+            } else {
+                imageView.setImageResource(R.drawable.my_devices_icon_reg);
+            }
+        }
+    }
+
+    /**
+     * @return the icon of the device from the cache, or read and cached, the default icon while the device's icon is being fetched, null
+     *         for an unknown device. Any thread.
+     */
+    private Bitmap lookupDeviceIcon(UUID appId, int viewId) {
+        if (null == appId) {
             return null;
         }
+        Bitmap icon = m_deviceIcons.get(appId);
+        if (null == icon && null != UIUtil.getDevice(appId)) {
+            // an icon that is not there yet is fetched for the view, the default is not cached so the next lookup finds the real one
+            icon = DeviceManagerImpl.getInstance().getDeviceImage(appId, false, viewId);
+            if (null != icon && !isDefaultIcon(icon)) {
+                m_deviceIcons.put(appId, icon);
+            }
+        }
+        return icon;
+    }
+
+    private static boolean isDefaultIcon(Bitmap icon) {
+        return DeviceManagerImpl.getDefaultBimapImage() == icon;
+    }
+
+    /**
+     * Prepares a card on a pre-render worker, then queues it for rendering. The text is measured into the cache and the device icon is
+     * looked up, so the main thread only has to bind and add the view.
+     */
+    private class PreRender implements Runnable {
+        private final CardEntry entry;
+        private final String text;
+
+        PreRender(CardEntry entry, String text) {
+            this.entry = entry;
+            this.text = text;
+        }
 
         @Override
-        protected void onPostExecute(Void result) {
-            handler.post(new Runnable() {
-                @Override
-                public void run() {
-                    emergencyNotificationsLayout.setVisibility(View.INVISIBLE);
+        public void run() {
+            if (entry.dismissed) {
+                return;
+            }
+            m_textMeasurer.prefetch(text);
+            // the id the icon broadcast refers to, so it is known before the view exists
+            entry.viewId = generateViewId();
+            entry.icon = lookupDeviceIcon(entry.appId, entry.viewId);
+            m_renderBatcher.enqueue(entry);
+        }
+    }
+
+    /**
+     * Shows the card with its expiry, or adds it to the overflow if the overlay is full. Must run on the main thread.
+     */
+    private void showCard(CardEntry entry) {
+        if (m_cardOverflow.isFull(entry)) {
+            m_cardOverflow.add(entry);
+            return;
+        }
+        if (null != m_cardList) {
+            if (IGNORE_VIEW_ID == entry.viewId) {
+                entry.viewId = generateViewId();
+            }
+            m_cardList.add(entry);
+        } else {
+            addNotificationCard(entry);
+        }
+        if (null == entry.expiry) {
+            // a card restored from the overflow keeps the expiry it got when it arrived
+            entry.expiry = m_expiryDriver.schedule(new CardExpiration(entry), popupTimeoutInMs(entry));
+        }
+    }
+
+    /**
+     * @return how long the card stays from now, shorter the more other cards are shown or waiting and the faster they arrive, always the
+     *         full timeout for EMERGENCY
+     */
+    private long popupTimeoutInMs(CardEntry entry) {
+        if (NotificationMessageType.EMERGENCY == entry.messageType) {
+            return m_popupTimeout.getMaxTimeoutInMs();
+        }
+        int depth = m_cardOverflow.visibleCount() + m_cardOverflow.count + m_renderBatcher.pending.size();
+        if (entry.overflowed || null != entry.card || entry.listSequence >= 0) {
+            depth--;
+        }
+        return m_popupTimeout.timeoutInMs(depth, System.nanoTime());
+    }
+
+    /**
+     * Keeps the number of cards on screen bounded. Cards past the limit wait here with nothing but their CardEntry, are counted on a single
+     * "+N more" card at the bottom of the overlay, and are shown in arrival order as cards on screen go away. A waiting card's expiry runs
+     * from its arrival, so it is only shown for what is left of its timeout, or not at all. Past MAX_WAITING cards the oldest INFO one is
+     * dropped and only counted on the "+N more" card. EMERGENCY cards are never held back. Only accessed on the main thread.
+     */
+    private class CardOverflow {
+        static final String METRIC_OVERFLOWED = "render.overflowed";
+        static final String METRIC_RESTORED = "render.restored";
+        static final String METRIC_WAITING_MAX = "render.overflow.max";
+        static final String METRIC_DROPPED = "render.overflow.dropped";
+
+        private static final int MAX_WAITING = 128;
+
+        private final int maxVisible;
+        private final ArrayDeque<CardEntry> waiting = new ArrayDeque<CardEntry>();
+        private final Map<UUID, Integer> waitingPerDevice = new HashMap<UUID, Integer>();
+        private int count;
+        // dropped since the overflow was last empty
+        private int dropped;
+        private NotificationCardPool.Card summaryCard;
+
+        /**
+         * @param maxVisible 0 is unlimited
+         */
+        CardOverflow(int maxVisible) {
+            this.maxVisible = Math.max(0, maxVisible);
+        }
+
+        boolean isFull(CardEntry entry) {
+            return maxVisible > 0 && visibleCount() >= maxVisible && NotificationMessageType.EMERGENCY != entry.messageType;
+        }
+
+        void add(CardEntry entry) {
+            if (count >= MAX_WAITING) {
+                CardEntry oldest = oldestDroppable();
+                dropped++;
+                m_metrics.increment(METRIC_DROPPED);
+                m_cardIndex.remove(oldest.key, oldest);
+                removeCard(oldest);
+            }
+            entry.overflowed = true;
+            waiting.addLast(entry);
+            count(entry.appId, 1);
+            entry.expiry = m_expiryDriver.schedule(new CardExpiration(entry), popupTimeoutInMs(entry));
+            m_metrics.increment(METRIC_OVERFLOWED);
+            m_metrics.max(METRIC_WAITING_MAX, count);
+        }
+
+        /**
+         * Forgets a waiting entry that was dismissed or expired
+         */
+        void remove(CardEntry entry) {
+            waiting.remove(entry);
+            entry.overflowed = false;
+            count(entry.appId, -1);
+        }
+
+        /**
+         * @return the oldest waiting entry if there is room for it, otherwise null
+         */
+        CardEntry pollRestorable() {
+            if (0 == count || (maxVisible > 0 && visibleCount() >= maxVisible)) {
+                return null;
+            }
+            CardEntry entry = waiting.peekFirst();
+            remove(entry);
+            m_metrics.increment(METRIC_RESTORED);
+            return entry;
+        }
+
+        /**
+         * @return the oldest waiting INFO entry, or the oldest entry if none is INFO
+         */
+        private CardEntry oldestDroppable() {
+            for (CardEntry entry : waiting) {
+                if (NotificationMessageType.INFO == entry.messageType) {
+                    return entry;
                 }
-            });
+            }
+            return waiting.peekFirst();
+        }
+
+        boolean isSummaryShown() {
+            return null != summaryCard;
+        }
+
+        private int visibleCount() {
+            return (null != m_cardList) ? m_cardList.size() : m_cardsByViewId.size();
         }
 
+        /**
+         * Adds, updates in place or removes the "+N more" card
+         */
+        void updateSummary() {
+            if (null != m_cardList) {
+                m_cardList.setOverflowText((0 == count) ? null : summaryText());
+                return;
+            }
+            if (0 == count) {
+                if (null != summaryCard) {
+                    nonEmergencyNotificationsLayout.removeView(summaryCard.root);
+                    m_cardPool.release(summaryCard);
+                    summaryCard = null;
+                }
+                return;
+            }
+
+            String text = summaryText();
+            if (null == summaryCard) {
+                summaryCard = m_cardPool.acquire();
+                summaryCard.deviceNameTextView.setText("");
+                summaryCard.messageTextView.setMinHeight(0);
+                summaryCard.messageTextView.setMaxLines(MAX_LINES);
+                summaryCard.iconImageView.setImageResource(R.drawable.my_devices_icon_reg);
+                nonEmergencyNotificationsLayout.addView(summaryCard.root, nonEmergencyNotificationsLayout.getChildCount());
+                m_scrollScheduler.requestScroll();
+            }
+            summaryCard.messageTextView.setText(text);
+        }
+
+        private String summaryText() {
+            if (1 == waitingPerDevice.size()) {
+                return getString(R.string.notification_overflow_summary_one_device, count + dropped, waiting.peekLast().deviceName);
+            }
+            return getString(R.string.notification_overflow_summary, count + dropped, waitingPerDevice.size());
+        }
+
+        private void count(UUID appId, int delta) {
+            count += delta;
+            Integer current = waitingPerDevice.get(appId);
+            int updated = ((null != current) ? current : 0) + delta;
+            if (updated > 0) {
+                waitingPerDevice.put(appId, updated);
+            } else {
+                waitingPerDevice.remove(appId);
+            }
+            if (0 == count) {
+                dropped = 0;
+            }
+        }
+    }
+
+    /**
+     * An emergency notification with an image, from its arrival until it was shown for its timeout or was dismissed
+     */
+    private static final class EmergencyAlert {
+        final NotificationKey key;
+        final UUID appId;
+        final String deviceName;
+        final CharSequence text;
+        final String imageUrl;
+        final long arrivedAt = System.nanoTime();
+
+        // only accessed on the main thread
+        boolean imageRequested;
+        EmergencyImageTask imageTask;
+        Bitmap image;
+
+        EmergencyAlert(NotificationKey key, UUID appId, String deviceName, CharSequence text, String imageUrl) {
+            this.key = key;
+            this.appId = appId;
+            this.deviceName = deviceName;
+            this.text = text;
+            this.imageUrl = imageUrl;
+        }
     }
 
-    private class DisplayNotificationTask extends AsyncTask<Long, Void, Integer> {
-        private static final int INVALID_VIEW_ID = -1;
+    /**
+     * Shows emergency notifications one at a time, in arrival order, each for the full fullscreen alert timeout. An alert is shown as soon
+     * as its slot opens, with its text and device icon; the image fades in once it is there. The images of the next PREFETCH_AHEAD alerts
+     * are fetched and decoded in the background while they wait, so they are usually there already, and a long queue does not hold every
+     * image in memory. Fetching is bounded by the configured deadlines
+     * and is cancelled when the alert is hidden or dismissed. Only accessed on the main thread, except for {@link #register} and
+     * {@link #unregister}.
+     */
+    private class EmergencyQueue {
+        static final String METRIC_QUEUED = "emergency.queued";
+        static final String METRIC_SHOWN = "emergency.shown";
+        static final String METRIC_DISMISSED = "emergency.dismissed";
+        static final String METRIC_DEPTH_MAX = "emergency.depth.max";
+        static final String METRIC_IMAGE_READY = "emergency.image.ready";
+        static final String METRIC_IMAGE_LATE = "emergency.image.late";
+        static final String METRIC_IMAGE_FAILED = "emergency.image.failed";
+        static final String METRIC_IMAGE_CANCELLED = "emergency.image.cancelled";
 
-        @Override
-        protected Integer doInBackground(Long... params) {
-            int viewId = INVALID_VIEW_ID;
-            if (null != params && params.length > 1) {
-                viewId = params[0].intValue();
-                long startTime = params[1];
-                try {
-                    Thread.sleep(getSleepTime(startTime, PropertiesManagerFactory.getPropertiesManager().getNotificationPopupTimeoutInMs()));
-                } catch (InterruptedException e) {
+        static final String METRIC_WAIT_NANOS_MAX = "emergency.waitNanos.max";
+
+        private static final long IMAGE_FADE_IN_MS = 300;
+        private static final int PREFETCH_AHEAD = 2;
+
+        /**
+         * Keys of the alerts waiting or shown, read by dismiss() on the AllJoyn callback thread
+         */
+        private final Map<NotificationKey, Boolean> keys = new ConcurrentHashMap<NotificationKey, Boolean>();
+
+        private final ArrayDeque<EmergencyAlert> waiting = new ArrayDeque<EmergencyAlert>();
+        private EmergencyAlert showing;
+        private TimingWheel.Timeout<Runnable> expiry;
+
+        private final Runnable expiration = new Runnable() {
+            @Override
+            public void run() {
+                expiry = null;
+                hide();
+            }
+        };
+
+        /**
+         * Any thread
+         */
+        void register(EmergencyAlert alert) {
+            keys.put(alert.key, Boolean.TRUE);
+        }
+
+        /**
+         * Any thread
+         *
+         * @return true if the alert was waiting or shown, it is then no longer shown once the main thread gets to it
+         */
+        boolean unregister(NotificationKey key) {
+            return null != keys.remove(key);
+        }
+
+        /**
+         * Queues the alert, its image is fetched once it is among the next few
+         */
+        void enqueue(EmergencyAlert alert) {
+            if (!keys.containsKey(alert.key)) {
+                // dismissed before it got here
+                return;
+            }
+            waiting.add(alert);
+            m_metrics.increment(METRIC_QUEUED);
+            m_metrics.max(METRIC_DEPTH_MAX, waiting.size());
+            showNext();
+        }
+
+        void onImageLoaded(EmergencyAlert alert, Bitmap image) {
+            alert.imageTask = null;
+            alert.image = image;
+            if (null == image) {
+                m_metrics.increment(METRIC_IMAGE_FAILED);
+                return;
+            }
+            if (alert == showing) {
+                m_metrics.increment(METRIC_IMAGE_LATE);
+                ImageView imageView = (ImageView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_image);
+                imageView.setImageBitmap(image);
+                imageView.setAlpha(0f);
+                imageView.setVisibility(View.VISIBLE);
+                imageView.animate().alpha(1f).setDuration(IMAGE_FADE_IN_MS);
+                alert.image = null;
+            }
+        }
+
+        void dismiss(NotificationKey key) {
+            keys.remove(key);
+            m_metrics.increment(METRIC_DISMISSED);
+            if (null != showing && showing.key.equals(key)) {
+                hide();
+                return;
+            }
+            Iterator<EmergencyAlert> iterator = waiting.iterator();
+            while (iterator.hasNext()) {
+                EmergencyAlert alert = iterator.next();
+                if (alert.key.equals(key)) {
+                    iterator.remove();
+                    cancelImage(alert);
+                    // the dismissed alert may have been the one the rest was waiting for
+                    showNext();
+                    return;
+                }
+            }
+        }
+
+        private void showNext() {
+            if (null == showing) {
+                EmergencyAlert alert = waiting.poll();
+                if (null != alert) {
+                    show(alert);
                 }
             }
-            return viewId;
+            int ahead = 0;
+            for (EmergencyAlert alert : waiting) {
+                if (PREFETCH_AHEAD == ahead++) {
+                    break;
+                }
+                fetchImage(alert);
+            }
+        }
+
+        /**
+         * Starts fetching the image unless it was fetched already
+         */
+        private void fetchImage(EmergencyAlert alert) {
+            if (alert.imageRequested) {
+                return;
+            }
+            alert.imageRequested = true;
+            PropertiesManager propertiesManager = PropertiesManagerFactory.getPropertiesManager();
+            alert.imageTask = new EmergencyImageTask(alert, propertiesManager.getEmergencyImageConnectTimeoutInMs(), propertiesManager
+                    .getEmergencyImageReadTimeoutInMs(), propertiesManager.getEmergencyImageTotalTimeoutInMs());
+            alert.imageTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+
+        private void show(EmergencyAlert alert) {
+            showing = alert;
+            fetchImage(alert);
+
+            TextView deviceNameTextView = (TextView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_title_bar_device_name);
+            deviceNameTextView.setText(alert.deviceName);
+            TextView messageTextView = (TextView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_message);
+            messageTextView.setText(alert.text);
+            ImageView imageView = (ImageView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_image);
+            imageView.animate().cancel();
+            imageView.setAlpha(1f);
+            if (null != alert.image) {
+                m_metrics.increment(METRIC_IMAGE_READY);
+                imageView.setImageBitmap(alert.image);
+                imageView.setVisibility(View.VISIBLE);
+            } else {
+                // text first, the image fades in if it arrives while the alert is shown
+                imageView.setImageDrawable(null);
+                imageView.setVisibility(View.INVISIBLE);
+            }
+            // the alert keeps no reference, the view holds the only one now
+            alert.image = null;
+            ImageView iconImageView = (ImageView) emergencyNotificationsLayout.findViewById(R.id.emergency_notification_title_bar_about_image);
+            UIUtil.setDeviceIcon(iconImageView, alert.appId, true, IGNORE_VIEW_ID);
+
+            emergencyNotificationsLayout.setVisibility(View.VISIBLE);
+            m_overlayWindow.requestUpdate();
+            expiry = m_expiryDriver.schedule(expiration, PropertiesManagerFactory.getPropertiesManager().getNotificationFullscreenAlertTimeoutInMs());
+
+            m_metrics.increment(METRIC_SHOWN);
+            m_metrics.max(METRIC_WAIT_NANOS_MAX, System.nanoTime() - alert.arrivedAt);
+        }
+
+        private void hide() {
+            if (null != expiry) {
+                m_expiryDriver.cancel(expiry);
+                expiry = null;
+            }
+            if (null != showing) {
+                keys.remove(showing.key);
+                cancelImage(showing);
+                showing = null;
+            }
+            emergencyNotificationsLayout.setVisibility(View.INVISIBLE);
+            m_overlayWindow.requestUpdate();
+            showNext();
+        }
+
+        private void cancelImage(EmergencyAlert alert) {
+            if (null != alert.imageTask) {
+                alert.imageTask.cancel(true);
+                alert.imageTask = null;
+                m_metrics.increment(METRIC_IMAGE_CANCELLED);
+            }
+            alert.image = null;
+        }
+    }
+
+    /**
+     * Owns the overlay window. The window is only attached while cards or the emergency notification are visible, and while there are only
+     * cards it covers just the card column up to the top card, so the compositor is not blending a full-screen translucent layer over the
+     * picture when little or nothing is shown. Growing is applied right away; shrinking and detaching wait a moment so the disappearing
+     * card animations are not cut off, and so a burst that empties and refills the overlay does not add and remove the window.
+     */
+    private class OverlayWindow implements Runnable {
+        static final String METRIC_ATTACHED = "overlay.attached";
+        static final String METRIC_DETACHED = "overlay.detached";
+        static final String METRIC_RESIZED = "overlay.resized";
+
+        /**
+         * The card column is the first of three equally weighted columns in notifications_layout
+         */
+        private static final int COLUMNS = 3;
+        private static final long SETTLE_DELAY_IN_MS = 500;
+
+        private final WindowManager.LayoutParams params;
+        private final View[] spacers;
+        private final Point displaySize = new Point();
+        private boolean attached;
+        private boolean updatePosted;
+        private boolean settlePosted;
+
+        private final Runnable settle = new Runnable() {
+            @Override
+            public void run() {
+                settlePosted = false;
+                update(true);
+            }
+        };
+
+        OverlayWindow(WindowManager.LayoutParams params) {
+            this.params = params;
+            this.params.gravity = Gravity.BOTTOM | Gravity.LEFT;
+            this.spacers = new View[] { rootNotificationsLayout.findViewById(R.id.notificationSpacerMiddle),
+                    rootNotificationsLayout.findViewById(R.id.notificationSpacerRight) };
+        }
+
+        /**
+         * Re-evaluates the window once the current message is done, so several changes in one pass cost a single measurement
+         */
+        void requestUpdate() {
+            if (!updatePosted) {
+                updatePosted = true;
+                handler.post(this);
+            }
+        }
+
+        void destroy() {
+            handler.removeCallbacks(this);
+            handler.removeCallbacks(settle);
+            if (attached) {
+                windowManager.removeView(rootNotificationsLayout);
+                attached = false;
+            }
         }
 
         @Override
-        protected void onPostExecute(Integer viewId) {
-            logger.debug(TAG, "onPostExecute()");
-            if (INVALID_VIEW_ID != viewId) {
-                final View view = nonEmergencyNotificationsLayout.findViewById(viewId);
-                if (null != view) {
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            nonEmergencyNotificationsLayout.removeView(view);
-                        }
-                    });
-                    handler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            scrollView.fullScroll(View.FOCUS_DOWN);
-                        }
-                    }, POST_DELAYED_IN_MS_BEFORE_SCROLL);
+        public void run() {
+            updatePosted = false;
+            update(false);
+        }
+
+        private void update(boolean settled) {
+            boolean emergency = View.VISIBLE == emergencyNotificationsLayout.getVisibility();
+            if (!emergency && !hasCards()) {
+                if (!attached) {
+                    return;
+                }
+                if (!settled) {
+                    postSettle();
+                    return;
                 }
+                windowManager.removeView(rootNotificationsLayout);
+                attached = false;
+                m_metrics.increment(METRIC_DETACHED);
+                return;
+            }
+
+            int width = WindowManager.LayoutParams.MATCH_PARENT;
+            int height = WindowManager.LayoutParams.MATCH_PARENT;
+            if (!emergency) {
+                windowManager.getDefaultDisplay().getSize(displaySize);
+                width = displaySize.x / COLUMNS;
+                height = measureCards(width, displaySize.y);
+            }
+
+            if (!attached) {
+                cancelSettle();
+                apply(width, height, emergency);
+                windowManager.addView(rootNotificationsLayout, params);
+                attached = true;
+                m_metrics.increment(METRIC_ATTACHED);
+                return;
+            }
+            if (width == params.width && height == params.height) {
+                cancelSettle();
+                return;
             }
+            if (!settled && (isSmaller(width, params.width) || isSmaller(height, params.height))) {
+                postSettle();
+                return;
+            }
+            cancelSettle();
+            apply(width, height, emergency);
+            windowManager.updateViewLayout(rootNotificationsLayout, params);
+            m_metrics.increment(METRIC_RESIZED);
+        }
+
+        private void apply(int width, int height, boolean emergency) {
+            params.width = width;
+            params.height = height;
+            // the card column takes the whole window unless the emergency notification needs the full layout
+            int visibility = emergency ? View.VISIBLE : View.GONE;
+            for (View spacer : spacers) {
+                spacer.setVisibility(visibility);
+            }
+        }
+
+        private boolean hasCards() {
+            return (null != m_cardList) ? m_cardList.getCount() > 0 : nonEmergencyNotificationsLayout.getChildCount() > 0;
+        }
+
+        /**
+         * @return the height the cards need at the given width, at most maxHeight, after which they scroll
+         */
+        private int measureCards(int width, int maxHeight) {
+            View cards = (null != m_cardList) ? m_cardList.listView : scrollView;
+            cards.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(maxHeight, View.MeasureSpec.AT_MOST));
+            return Math.max(1, cards.getMeasuredHeight());
+        }
+
+        private boolean isSmaller(int size, int current) {
+            if (WindowManager.LayoutParams.MATCH_PARENT == size) {
+                return false;
+            }
+            return WindowManager.LayoutParams.MATCH_PARENT == current || size < current;
         }
 
+        private void postSettle() {
+            if (!settlePosted) {
+                settlePosted = true;
+                handler.postDelayed(settle, SETTLE_DELAY_IN_MS);
+            }
+        }
+
+        private void cancelSettle() {
+            if (settlePosted) {
+                settlePosted = false;
+                handler.removeCallbacks(settle);
+            }
+        }
     }
 
-    private static long getSleepTime(long startTime, long sleepTimeInMs) {
-        long retval = 0;
-        long curTime = System.currentTimeMillis();
-        long diff = curTime - startTime;
-        if (diff < sleepTimeInMs) {
-            retval = sleepTimeInMs - diff;
+    /**
+     * Coalesces scroll requests from cards being added and removed. The scroll happens once no request came for the quiet period, or once
+     * the first pending request is max delay old, and always in a frame callback, so there is at most one full scroll per frame.
+     */
+    private class ScrollScheduler implements Runnable, Choreographer.FrameCallback {
+        static final String METRIC_REQUESTED = "scroll.requested";
+        static final String METRIC_PERFORMED = "scroll.performed";
+
+        private final Choreographer choreographer;
+        private final long quietNanos;
+        private final long maxDelayNanos;
+        private boolean pending;
+        private boolean timerPosted;
+        private boolean framePosted;
+        private long firstRequest;
+        private long lastRequest;
+        private long framePostedAt;
+
+        ScrollScheduler(Choreographer choreographer, long quietInMs, long maxDelayInMs) {
+            this.choreographer = choreographer;
+            this.quietNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, quietInMs));
+            this.maxDelayNanos = Math.max(quietNanos, TimeUnit.MILLISECONDS.toNanos(maxDelayInMs));
+        }
+
+        void requestScroll() {
+            m_metrics.increment(METRIC_REQUESTED);
+            long now = System.nanoTime();
+            if (!pending) {
+                pending = true;
+                firstRequest = now;
+            }
+            lastRequest = now;
+            // the timer re-arms itself until the overlay is quiet, instead of being reposted for every request
+            if (!timerPosted && !framePosted) {
+                timerPosted = true;
+                handler.postDelayed(this, TimeUnit.NANOSECONDS.toMillis(quietNanos));
+            }
+        }
+
+        @Override
+        public void run() {
+            timerPosted = false;
+            long now = System.nanoTime();
+            long due = Math.min(lastRequest + quietNanos, firstRequest + maxDelayNanos);
+            if (now < due) {
+                timerPosted = true;
+                handler.postDelayed(this, TimeUnit.NANOSECONDS.toMillis(due - now) + 1);
+                return;
+            }
+            framePosted = true;
+            framePostedAt = now;
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            framePosted = false;
+            if (null != m_cardList) {
+                m_cardList.scrollToNewest();
+            } else {
+                scrollView.fullScroll(View.FOCUS_DOWN);
+            }
+            m_metrics.increment(METRIC_PERFORMED);
+
+            pending = false;
+            if (lastRequest > framePostedAt) {
+                // cards changed while waiting for the frame, they may not be laid out yet
+                pending = true;
+                firstRequest = lastRequest;
+                timerPosted = true;
+                handler.postDelayed(this, TimeUnit.NANOSECONDS.toMillis(quietNanos));
+            }
         }
-        return retval;
     }
 
-    private class SetImageBitmapTask extends AsyncTask<Void, Void, Void> {
-        private final ImageView imageView;
-        private final String url;
-        private Bitmap bitmap;
+    /**
+     * Runs the expirations of a {@link TimingWheel} on the main thread. It only wakes up for ticks that have something scheduled, and every
+     * expiration due in a tick runs in the same message, so the cards they remove go away in one layout pass followed by a single scroll.
+     */
+    private class ExpiryDriver implements Runnable {
+        private final TimingWheel<Runnable> wheel;
+        private final List<Runnable> expired = new ArrayList<Runnable>();
+        private long wakeUpAt = Long.MAX_VALUE;
 
-        SetImageBitmapTask(ImageView imageView, String url) {
-            this.imageView = imageView;
-            this.url = url;
+        ExpiryDriver(TimingWheel<Runnable> wheel) {
+            this.wheel = wheel;
+        }
+
+        TimingWheel.Timeout<Runnable> schedule(Runnable expiration, long delayInMs) {
+            long now = System.nanoTime();
+            TimingWheel.Timeout<Runnable> timeout = wheel.schedule(expiration, delayInMs, now);
+            reschedule(now);
+            return timeout;
+        }
+
+        void cancel(TimingWheel.Timeout<Runnable> timeout) {
+            wheel.cancel(timeout);
         }
 
         @Override
-        protected Void doInBackground(Void... params) {
-            bitmap = getImageBitmap(url);
-            return null;
+        public void run() {
+            wakeUpAt = Long.MAX_VALUE;
+            long now = System.nanoTime();
+            wheel.advance(now, expired);
+            for (Runnable expiration : expired) {
+                expiration.run();
+            }
+            expired.clear();
+            reschedule(now);
+        }
+
+        private void reschedule(long now) {
+            long nanosUntilTick = wheel.nanosUntilNextTick(now);
+            if (nanosUntilTick < 0 || now + nanosUntilTick >= wakeUpAt) {
+                return;
+            }
+            wakeUpAt = now + nanosUntilTick;
+            handler.removeCallbacks(this);
+            // rounded up, waking up short of the tick finds nothing due and spins on zero delays
+            handler.postDelayed(this, TimeUnit.NANOSECONDS.toMillis(nanosUntilTick) + 1);
+        }
+    }
+
+    /**
+     * Collects the notifications queued since the last vsync and adds their cards to the overlay in one frame callback, followed by a single
+     * scroll. Cards are taken by priority lane until the frame's time budget is used, so an EMERGENCY card is never stuck behind a flood of
+     * INFO, and a burst drains as fast as the main thread can bind cards while leaving each frame room for layout and draw.
+     */
+    private class RenderBatcher implements Choreographer.FrameCallback {
+        static final String METRIC_FRAMES = "render.frames";
+        static final String METRIC_CARDS = "render.cards";
+        static final String METRIC_BATCH_MAX = "render.batch.max";
+        static final String METRIC_FRAME_NANOS_TOTAL = "render.frameNanos.total";
+        static final String METRIC_FRAME_NANOS_MAX = "render.frameNanos.max";
+
+        private final Choreographer choreographer;
+        private final LaneScheduler<CardEntry> pending;
+        private final long frameBudgetNanos;
+        private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+
+        /**
+         * @param frameBudgetInMs main thread time a frame may spend adding cards, at least one card is added per frame
+         */
+        RenderBatcher(Choreographer choreographer, LaneScheduler<CardEntry> pending, int frameBudgetInMs) {
+            this.choreographer = choreographer;
+            this.pending = pending;
+            this.frameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, frameBudgetInMs));
+        }
+
+        /**
+         * May be called from any thread
+         */
+        void enqueue(CardEntry entry) {
+            pending.offer(entry.messageType, entry);
+            scheduleFrame();
+        }
+
+        private void scheduleFrame() {
+            if (frameScheduled.compareAndSet(false, true)) {
+                choreographer.postFrameCallback(this);
+            }
         }
 
         @Override
-        protected void onPostExecute(Void result) {
-            if (null != bitmap) {
-                imageView.setImageBitmap(bitmap);
+        public void doFrame(long frameTimeNanos) {
+            // cleared before draining, so anything enqueued during this frame schedules the next one
+            frameScheduled.set(false);
+            long start = System.nanoTime();
+            int count = 0;
+            CardEntry entry;
+            while ((0 == count || System.nanoTime() - start < frameBudgetNanos) && null != (entry = pending.poll())) {
+                if (entry.dismissed) {
+                    continue;
+                }
+                if (!m_cardGroups.merge(entry)) {
+                    showCard(entry);
+                    m_cardGroups.open(entry);
+                    count++;
+                }
+                // counted once the card has its timeout, so the timeout reflects the traffic before it
+                m_popupTimeout.onArrival(start);
+            }
+            m_cardOverflow.updateSummary();
+            m_overlayWindow.requestUpdate();
+            if (!pending.isEmpty()) {
+                scheduleFrame();
+            }
+            if (0 == count) {
+                return;
             }
 
-            emergencyNotificationsLayout.setVisibility(View.VISIBLE);
-            new MakeEmergencyNotificationInvisibleTask().execute(System.currentTimeMillis());
+            m_scrollScheduler.requestScroll();
+
+            long elapsed = System.nanoTime() - start;
+            m_metrics.increment(METRIC_FRAMES);
+            m_metrics.add(METRIC_CARDS, count);
+            m_metrics.max(METRIC_BATCH_MAX, count);
+            m_metrics.add(METRIC_FRAME_NANOS_TOTAL, elapsed);
+            m_metrics.max(METRIC_FRAME_NANOS_MAX, elapsed);
         }
+    }
+
+    /**
+     * Binds a pooled card to the entry and appends it to the overlay. Must run on the main thread.
+     */
+    private void addNotificationCard(CardEntry entry) {
+        final int viewId = (IGNORE_VIEW_ID != entry.viewId) ? entry.viewId : generateViewId();
+        CharSequence deviceName = cardTitle(entry);
+        CharSequence notificationText = entry.text;
+
+        NotificationCardPool.Card card = m_cardPool.acquire();
+        final View layout = card.root;
+
+        // set the device name
+        card.deviceNameTextView.setText(deviceName);
 
-        private Bitmap getImageBitmap(String url) {
+        // set the text
+        TextView messageTextView = card.messageTextView;
+        messageTextView.setText(notificationText);
+
+        String notificationTextString = "";
+        if (null != notificationText) {
+            notificationTextString = notificationText.toString();
+        }
+
+        // === precalc the number of lines ===
+        // need to do this preprocessing, so that text view expands to 4 lines
+
+        // find the space that the toast's layout allows the text view
+        layout.measure(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT);
+
+        int maxWidth = messageTextView.getMeasuredWidth();
+        logger.debug(TAG, "maxWidth=" + maxWidth);
+
+        // simulate a layout, so that we can predict the final TextView height, usually already done by the ingest consumer
+        TextPaint textPaint = messageTextView.getPaint();
+        int minHeight = m_textMeasurer.getHeight(notificationTextString, maxWidth, textPaint);
+        if (maxWidth != m_textBudgetWidth) {
+            // only once, and again when a configuration change resizes the cards
+            m_textNormalizer.fitLayout(MAX_LINES, maxWidth, textPaint.measureText(NARROW_GLYPH));
+            m_textBudgetWidth = maxWidth;
+        }
+        int maxHeight = (int) (MAX_LINES * (textPaint.descent() - textPaint.ascent()));
+        logger.debug(TAG, "minHeight=" + minHeight);
+
+        // assign a minimum height to the TextView, according to simulation result
+        messageTextView.setMinHeight(Math.min(maxHeight, minHeight)); // a too high minimum, will pass the 4 lines limit.
+        messageTextView.setMaxLines(MAX_LINES);
+
+        // === end precalc the number of lines ===
+
+        layout.setId(viewId);
+
+        // new cards go above the "+N more" card, which stays at the bottom
+        int index = nonEmergencyNotificationsLayout.getChildCount() - (m_cardOverflow.isSummaryShown() ? 1 : 0);
+        nonEmergencyNotificationsLayout.addView(layout, index);
+        entry.card = card;
+        entry.viewId = viewId;
+        m_cardsByViewId.put(viewId, entry);
+        if (null != entry.icon && !isDefaultIcon(entry.icon)) {
+            card.iconImageView.setImageBitmap(entry.icon);
+        } else {
+            // looked up again now that the view is found under its id, a broadcast that the icon arrived may have found no view before
+            UIUtil.setDeviceIcon(card.iconImageView, entry.appId, false, viewId);
+        }
+    }
+
+    private class CardExpiration implements Runnable {
+        private final CardEntry entry;
+
+        CardExpiration(CardEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            m_cardIndex.remove(entry.key, entry);
+            entry.expiry = null;
+            removeCard(entry);
+        }
+    }
+
+    /**
+     * Fetches and decodes the image of a queued emergency notification. Connecting and every read are bounded by their timeouts, and the
+     * download as a whole by the total deadline, which is checked between reads, so a slow server costs at most the total plus one read
+     * timeout. Images over MAX_IMAGE_BYTES are not downloaded, and the rest are decoded subsampled to about the size of the display.
+     */
+    private class EmergencyImageTask extends AsyncTask<Void, Void, Bitmap> {
+        static final String METRIC_TIMEOUTS = "emergency.image.timeouts";
+        static final String METRIC_FETCH_NANOS_TOTAL = "emergency.image.fetchNanos.total";
+        static final String METRIC_FETCH_NANOS_MAX = "emergency.image.fetchNanos.max";
+        static final String METRIC_TOO_LARGE = "emergency.image.tooLarge";
+
+        private static final int READ_BUFFER_SIZE = 8192;
+        private static final int MAX_IMAGE_BYTES = 4 * 1024 * 1024;
+
+        private final EmergencyAlert alert;
+        private final int connectTimeoutInMs;
+        private final int readTimeoutInMs;
+        private final long totalTimeoutNanos;
+        private final Point displaySize = new Point();
+
+        EmergencyImageTask(EmergencyAlert alert, int connectTimeoutInMs, int readTimeoutInMs, int totalTimeoutInMs) {
+            this.alert = alert;
+            this.connectTimeoutInMs = connectTimeoutInMs;
+            this.readTimeoutInMs = readTimeoutInMs;
+            this.totalTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(totalTimeoutInMs);
+            windowManager.getDefaultDisplay().getSize(displaySize);
+        }
+
+        @Override
+        protected Bitmap doInBackground(Void... params) {
+            long start = System.nanoTime();
+            Bitmap bitmap = getImageBitmap(alert.imageUrl, start + totalTimeoutNanos);
+            long elapsed = System.nanoTime() - start;
+            m_metrics.add(METRIC_FETCH_NANOS_TOTAL, elapsed);
+            m_metrics.max(METRIC_FETCH_NANOS_MAX, elapsed);
+            return bitmap;
+        }
+
+        @Override
+        protected void onPostExecute(Bitmap bitmap) {
+            m_emergencyQueue.onImageLoaded(alert, bitmap);
+        }
+
+        private Bitmap getImageBitmap(String url, long deadline) {
             Bitmap bitmap = null;
+            InputStream is = null;
             try {
                 URL aURL = new URL(url);
                 URLConnection conn = aURL.openConnection();
+                conn.setConnectTimeout(connectTimeoutInMs);
+                conn.setReadTimeout(readTimeoutInMs);
                 conn.connect();
-                InputStream is = conn.getInputStream();
-                BufferedInputStream bis = new BufferedInputStream(is);
-                bitmap = BitmapFactory.decodeStream(bis);
-                bis.close();
-                is.close();
+                is = conn.getInputStream();
+
+                int contentLength = conn.getContentLength();
+                if (contentLength > MAX_IMAGE_BYTES) {
+                    m_metrics.increment(METRIC_TOO_LARGE);
+                    Log.w(TAG, "Emergency image is " + contentLength + " bytes, dropped: " + url);
+                    return null;
+                }
+                // the length is unknown for a chunked response, the buffer then grows as needed
+                ByteArrayOutputStream content = new ByteArrayOutputStream((contentLength > 0) ? contentLength : READ_BUFFER_SIZE);
+                byte[] buffer = new byte[READ_BUFFER_SIZE];
+                int read;
+                while (-1 != (read = is.read(buffer))) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    if (System.nanoTime() - deadline > 0) {
+                        m_metrics.increment(METRIC_TIMEOUTS);
+                        Log.w(TAG, "Emergency image took too long, dropped: " + url);
+                        return null;
+                    }
+                    if (content.size() + read > MAX_IMAGE_BYTES) {
+                        m_metrics.increment(METRIC_TOO_LARGE);
+                        Log.w(TAG, "Emergency image is over " + MAX_IMAGE_BYTES + " bytes, dropped: " + url);
+                        return null;
+                    }
+                    content.write(buffer, 0, read);
+                }
+                byte[] bytes = content.toByteArray();
+                bitmap = decodeSampled(bytes);
+            } catch (SocketTimeoutException e) {
+                m_metrics.increment(METRIC_TIMEOUTS);
+                Log.w(TAG, "Emergency image timed out: " + url);
             } catch (IOException e) {
                 Log.e(TAG, "Error getting bitmap", e);
-                e.printStackTrace();
+            } finally {
+                if (null != is) {
+                    try {
+                        is.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "Error closing image stream", e);
+                    }
+                }
             }
             return bitmap;
         }
+
+        /**
+         * Decodes the image at the largest power of two subsampling that keeps it at least as large as the display
+         */
+        private Bitmap decodeSampled(byte[] bytes) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            int sampleSize = 1;
+            while (options.outWidth / (sampleSize * 2) >= displaySize.x && options.outHeight / (sampleSize * 2) >= displaySize.y) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
     }
 
     /**
@@ -666,9 +2490,9 @@ public class NotificationViewer extends Service {
      * @param msg
      */
     // need to finalize position, coloring and size
-    public void showToast(Notification notification) {
+    public void showToast(NotificationRecord notification) {
         String deviceName = notification.getDeviceName();
-        CharSequence notificationText = getLocalizedText(notification.getText());
+        CharSequence notificationText = notification.getText();
         int iconResource = getIcon(notification);
 
         doShowToast(iconResource, deviceName, notificationText);
@@ -705,10 +2529,10 @@ public class NotificationViewer extends Service {
         int maxWidth = messageTextView.getMeasuredWidth();
         logger.debug(TAG, "maxWidth=" + maxWidth);
 
-        // simulate a layout, so that we can predict the final TextView height
+        // simulate a layout, so that we can predict the final TextView height; toasts may be shown off the main thread and
+        // lay out with their own paint, so they bypass the cards' measurer
         TextPaint textPaint = messageTextView.getPaint();
-        StaticLayout staticLayout = new StaticLayout(notifText, textPaint, maxWidth, Alignment.ALIGN_NORMAL, 1.0f, 0.0f, false);
-        int minHeight = staticLayout.getHeight();
+        int minHeight = CardTextMeasurer.measure(notifText, maxWidth, textPaint);
         int maxHeight = (int) (MAX_LINES * (textPaint.descent() - textPaint.ascent()));
         logger.debug(TAG, "minHeight=" + minHeight);
 
@@ -731,7 +2555,7 @@ public class NotificationViewer extends Service {
         toast.show();
     }
 
-    private int getIcon(Notification notification) {
+    private int getIcon(NotificationRecord notification) {
         switch (notification.getMessageType()) {
         case EMERGENCY:
             return R.drawable.tv_notify_urgent;
@@ -744,18 +2568,6 @@ public class NotificationViewer extends Service {
         }
     }
 
-    private CharSequence getLocalizedText(List<NotificationText> notificationTextList) {
-        for (NotificationText nt : notificationTextList) {
-            if (nt.getLanguage().equalsIgnoreCase(m_languageTag)) {
-                return nt.getText();
-            }
-        }
-        if (!notificationTextList.isEmpty()) {
-            return notificationTextList.get(0).getText();
-        }
-        return "";
-    }
-
     /**
      * Performs all the preparation before starting the service
      */
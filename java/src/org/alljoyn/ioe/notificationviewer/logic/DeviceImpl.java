@@ -67,7 +67,8 @@ public class DeviceImpl implements Device, ServiceAvailabilityListener {
     private String m_defaultLanguage = "en";
     private short m_port;
 
-    private boolean m_notificationOn = true;
+    // read by the AllJoyn callback threads to drop notifications of muted devices
+    private volatile boolean m_notificationOn = true;
     private String m_helpUrl = "";
     private boolean m_aboutDirty;
     private AboutClient m_aboutClient;
@@ -237,11 +238,18 @@ public class DeviceImpl implements Device, ServiceAvailabilityListener {
     @Override
     public void turnOnNotifications() {
         m_notificationOn = true;
+        SharedPreferencesManager.saveNotificationOn(m_uniqueId, true);
     }
 
     @Override
     public void turnOffNotifications() {
         m_notificationOn = false;
+        SharedPreferencesManager.saveNotificationOn(m_uniqueId, false);
+    }
+
+    // for recovery, does not save the state again
+    protected void setNotificationOn(boolean notificationOn) {
+        m_notificationOn = notificationOn;
     }
 
     @Override
@@ -34,6 +34,7 @@ import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.alljoyn.about.AboutKeys;
 import org.alljoyn.bus.BusException;
@@ -66,7 +67,8 @@ public class DeviceManagerImpl implements DeviceManager {
 
     private final String TAG = "DeviceManagerImpl";
 
-    Map<String, Device> m_deviceList;
+    // keyed by the device UUID, read by the AllJoyn callback threads on every notification
+    Map<UUID, Device> m_deviceList;
     protected static Context m_context;
 
     private static DeviceManager m_current;
@@ -90,7 +92,7 @@ public class DeviceManagerImpl implements DeviceManager {
     public void init(Context c, String keyStorekeyStoreFileName) {
         m_context = c;
         if (m_deviceList == null)
-            m_deviceList = new HashMap<String, Device>();
+            m_deviceList = new ConcurrentHashMap<UUID, Device>();
 
         SharedPreferencesManager.init(c);
 
@@ -99,6 +101,7 @@ public class DeviceManagerImpl implements DeviceManager {
 
         defaultImage = BitmapFactory.decodeResource(c.getResources(), R.drawable.my_devices_icon_reg);
         loadDevicesFromPreference();
+        loadMutedDevicesFromPreference();
     }
 
     public static Bitmap getDefaultBimapImage() {
@@ -117,7 +120,7 @@ public class DeviceManagerImpl implements DeviceManager {
 
     @Override
     public boolean contains(UUID deviceID) {
-        return m_deviceList.containsKey(deviceID.toString());
+        return m_deviceList.containsKey(deviceID);
     }
 
     @Override
@@ -125,7 +128,7 @@ public class DeviceManagerImpl implements DeviceManager {
         if (m_deviceList == null || deviceID == null)
             return null;
 
-        return m_deviceList.get(deviceID.toString());
+        return m_deviceList.get(deviceID);
     }
 
     @Override
@@ -135,7 +138,7 @@ public class DeviceManagerImpl implements DeviceManager {
         if (m_ImageCacheManager != null) {
             m_ImageCacheManager.removeDeviceFromUUUIDList(deviceID);
         }
-        return m_deviceList.remove(deviceID.toString());
+        return m_deviceList.remove(deviceID);
     }
 
     protected Device getDeviceByServiceName(String serviceName) {
@@ -197,13 +200,41 @@ public class DeviceManagerImpl implements DeviceManager {
 
             if (newDevice) {
                 d.setStatus(DeviceStatus.UNAVAILABLE);
+                d.setNotificationOn(SharedPreferencesManager.isNotificationOn(deviceId));
                 if (deviceId != null) {
-                    m_deviceList.put(deviceId.toString(), d);
+                    m_deviceList.put(deviceId, d);
                 }
             }
         }
     }
 
+    // muted devices are kept even before they announce, so their notifications are dropped right away
+    private void loadMutedDevicesFromPreference() {
+
+        Log.i(TAG, "loadMutedDevicesFromPreference");
+        Set<String> mutedDevices = SharedPreferencesManager.getAllMutedDevices();
+        if (mutedDevices == null || mutedDevices.isEmpty())
+            return;
+        for (String deviceIdTmp : mutedDevices) {
+            UUID deviceId;
+            try {
+                deviceId = UUID.fromString(deviceIdTmp);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "loadMutedDevicesFromPreference ignoring bad id " + deviceIdTmp);
+                continue;
+            }
+
+            Log.i(TAG, "loadMutedDevicesFromPreference load from " + deviceId);
+            DeviceImpl d = (DeviceImpl) getDevice(deviceId);
+            if (d == null) {
+                d = new DeviceImpl("", deviceId);
+                d.setStatus(DeviceStatus.UNAVAILABLE);
+                m_deviceList.put(deviceId, d);
+            }
+            d.setNotificationOn(false);
+        }
+    }
+
     public void onDeviceLost(String serviceName, boolean verified) {
         DeviceImpl device = (DeviceImpl) getDeviceByServiceName(serviceName);
         Log.d(TAG, "onDeviceLost busName = " + serviceName + (device != null ? ", friendly name = " + device.getFriendlyName() : " device not found")
@@ -262,7 +293,8 @@ public class DeviceManagerImpl implements DeviceManager {
             Log.i(TAG, "onAnnouncement: can't find device by uuid -- " + uniqueId + "create new device");
             device = new DeviceImpl(serviceName, uniqueId);
             device.setPort(port);
-            m_deviceList.put(uniqueId.toString(), device);
+            device.setNotificationOn(SharedPreferencesManager.isNotificationOn(uniqueId));
+            m_deviceList.put(uniqueId, device);
         }
         device.setServiceName(serviceName);
         device.setAbout(newMap);
@@ -319,7 +351,7 @@ public class DeviceManagerImpl implements DeviceManager {
 
     // NOTE: added for demo only
     public void addDevice(DeviceImpl d) {
-        m_deviceList.put(d.getId().toString(), d);
+        m_deviceList.put(d.getId(), d);
     }
 
     @Override
@@ -367,6 +399,11 @@ public class DeviceManagerImpl implements DeviceManager {
         return defaultImage;
     }
 
+    @Override
+    public void cancelDeviceImage(UUID deviceID, int idOfLayoutContainingIconView) {
+        m_ImageCacheManager.removeDeviceFromQueue(deviceID, idOfLayoutContainingIconView);
+    }
+
     private class ImageCacheManager {
 
         private class ImageCacheObject {
@@ -390,7 +427,8 @@ public class DeviceManagerImpl implements DeviceManager {
             public int idOfLayoutContainingIconView;
         }
 
-        private Map<UUID, ImageCacheObject> m_UUIDtoImageCacheObject = new HashMap<UUID, ImageCacheObject>();
+        // icons are looked up from the pre-render workers as well as the main thread
+        private Map<UUID, ImageCacheObject> m_UUIDtoImageCacheObject = new ConcurrentHashMap<UUID, ImageCacheObject>();
 
         private BlockingQueue<ImageCacheObject> m_imageDownloadQueue = new ArrayBlockingQueue<ImageCacheObject>(100);
         private Map<String, Set<UUID>> m_URLtoUUIDSet = new HashMap<String, Set<UUID>>();
@@ -399,7 +437,7 @@ public class DeviceManagerImpl implements DeviceManager {
             m_UUIDtoImageCacheObject.remove(uuid);
         }
 
-        public void addNewDeviceToQueue(UUID uuid, boolean isNotificationWithImage, int idOfLayoutContainingIconView) {
+        public synchronized void addNewDeviceToQueue(UUID uuid, boolean isNotificationWithImage, int idOfLayoutContainingIconView) {
             if (!isInQueue(uuid)) {
                 ImageCacheObject cacheObject = new ImageCacheObject(uuid, isNotificationWithImage, idOfLayoutContainingIconView);
                 m_UUIDtoImageCacheObject.put(uuid, cacheObject);
@@ -407,6 +445,17 @@ public class DeviceManagerImpl implements DeviceManager {
             }
         }
 
+        /**
+         * Drops the fetch queued for the view, so the next card of the device queues it again
+         */
+        public synchronized void removeDeviceFromQueue(UUID uuid, int idOfLayoutContainingIconView) {
+            ImageCacheObject cacheObject = m_UUIDtoImageCacheObject.get(uuid);
+            if (cacheObject != null && cacheObject.idOfLayoutContainingIconView == idOfLayoutContainingIconView
+                    && m_imageDownloadQueue.remove(cacheObject)) {
+                m_UUIDtoImageCacheObject.remove(uuid);
+            }
+        }
+
         public boolean isInQueue(UUID m_UUID) {
             return (m_UUIDtoImageCacheObject.get(m_UUID) != null);
         }
@@ -41,4 +41,6 @@ public interface DeviceManager {
 
     public Bitmap getDeviceImage(UUID deviceID, boolean isNotificationWithImage, int idOfLayoutContainingIconView);
 
+    public void cancelDeviceImage(UUID deviceID, int idOfLayoutContainingIconView);
+
 }
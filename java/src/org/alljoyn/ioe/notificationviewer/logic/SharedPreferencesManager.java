@@ -17,6 +17,7 @@
 package org.alljoyn.ioe.notificationviewer.logic;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import android.content.Context;
@@ -26,7 +27,9 @@ import android.util.Log;
 
 public class SharedPreferencesManager {
     private static SharedPreferences devicesSp;
+    private static SharedPreferences mutedDevicesSp;
     private static String DEVICES = "devices";
+    private static String MUTED_DEVICES = "mutedDevices";
 
     public static final String keyValueSeparator = "=";
     public static final String pairsSeparator = ";";
@@ -40,6 +43,7 @@ public class SharedPreferencesManager {
 
     public static void init(Context c) {
         devicesSp = c.getSharedPreferences(DEVICES, Context.MODE_PRIVATE);
+        mutedDevicesSp = c.getSharedPreferences(MUTED_DEVICES, Context.MODE_PRIVATE);
     }
 
     public static void saveDevice(UUID m_uniqueId, String deviceDescription) {
@@ -82,6 +86,37 @@ public class SharedPreferencesManager {
         e.commit();
     }
 
+    public static void saveNotificationOn(UUID m_uniqueId, boolean notificationOn) {
+        if (m_uniqueId == null)
+            return;
+        Log.d(TAG, "save notification state to preferencese, id = " + m_uniqueId + " notification on = " + notificationOn);
+        if (mutedDevicesSp == null) {
+            Log.e(TAG, "mutedDevicesSp == null");
+            return;
+        }
+        Editor e = mutedDevicesSp.edit();
+
+        // only muted devices are stored, notifications are on by default
+        if (notificationOn) {
+            e.remove(m_uniqueId.toString());
+        } else {
+            e.putBoolean(m_uniqueId.toString(), false);
+        }
+        e.commit();
+    }
+
+    public static boolean isNotificationOn(UUID m_uniqueId) {
+        if (mutedDevicesSp == null || m_uniqueId == null)
+            return true;
+        return !mutedDevicesSp.contains(m_uniqueId.toString());
+    }
+
+    public static Set<String> getAllMutedDevices() {
+        if (mutedDevicesSp == null)
+            return null;
+        return mutedDevicesSp.getAll().keySet();
+    }
+
     public static Map<String, String> getAllDevices() {
         if (devicesSp == null)
             return null;
@@ -0,0 +1,178 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects the replay of the sessionless cache that follows a (re)connect and
+ * collects the replayed notifications into one digest per device instead of
+ * rendering each of them. Catch-up starts when, within the startup window
+ * after {@link #start}, the arrival rate reaches the threshold, and ends once
+ * no notification arrived for the quiet period or the startup window is over.
+ *
+ * Not thread safe, meant to be used by the single ingest consumer.
+ */
+public class CatchUpMode {
+
+    public static final String METRIC_ENTERED = "catchup.entered";
+    public static final String METRIC_ACTIVE = "catchup.active";
+    public static final String METRIC_DIGESTED = "catchup.digested";
+    public static final String METRIC_DURATION_NANOS_MAX = "catchup.durationNanos.max";
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The notifications of one device that arrived during catch-up
+     */
+    public static final class Digest {
+        public final UUID appId;
+        public final String deviceName;
+        public final int count;
+        public final String latestText;
+
+        Digest(UUID appId, String deviceName, int count, String latestText) {
+            this.appId = appId;
+            this.deviceName = deviceName;
+            this.count = count;
+            this.latestText = latestText;
+        }
+    }
+
+    private static final class Entry {
+        String deviceName;
+        int count;
+        String latestText;
+    }
+
+    private final int arrivalsPerSecond;
+    private final long startupWindowNanos;
+    private final long quietNanos;
+    private final PipelineMetrics metrics;
+
+    private boolean started;
+    private long startedAt;
+    private long rateWindowStart;
+    private int rateWindowCount;
+    private long lastArrival;
+    private boolean active;
+    private long activeSince;
+
+    private final Map<UUID, Entry> digests = new LinkedHashMap<UUID, Entry>();
+
+    /**
+     * @param arrivalsPerSecond arrival rate that starts catch-up, 0 disables it
+     * @param startupWindowInMs how long after {@link #start} arrivals count as a replay
+     * @param quietInMs how long without arrivals ends catch-up
+     */
+    public CatchUpMode(int arrivalsPerSecond, long startupWindowInMs, long quietInMs, PipelineMetrics metrics) {
+        this.arrivalsPerSecond = arrivalsPerSecond;
+        this.startupWindowNanos = TimeUnit.MILLISECONDS.toNanos(startupWindowInMs);
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietInMs);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Called when the receiver starts, the replay of the sessionless cache follows
+     */
+    public void start(long now) {
+        started = true;
+        startedAt = now;
+        rateWindowStart = now;
+        rateWindowCount = 0;
+    }
+
+    /**
+     * Called for every notification taken off the ingest queue
+     */
+    public void onArrival(long now) {
+        lastArrival = now;
+        if (now - rateWindowStart >= RATE_WINDOW_NANOS) {
+            rateWindowStart = now;
+            rateWindowCount = 0;
+        }
+        rateWindowCount++;
+
+        if (!active && started && arrivalsPerSecond > 0 && now - startedAt < startupWindowNanos && rateWindowCount >= arrivalsPerSecond) {
+            active = true;
+            activeSince = now;
+            metrics.increment(METRIC_ENTERED);
+            metrics.set(METRIC_ACTIVE, 1);
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Counts the notification towards the digest of its device instead of rendering it
+     */
+    public void digest(NotificationRecord record) {
+        Entry entry = digests.get(record.getAppId());
+        if (null == entry) {
+            entry = new Entry();
+            digests.put(record.getAppId(), entry);
+        }
+        entry.deviceName = record.getDeviceName();
+        entry.latestText = record.getText();
+        entry.count++;
+        metrics.increment(METRIC_DIGESTED);
+    }
+
+    /**
+     * @return true if catch-up just ended, the digests are then ready to be taken
+     */
+    public boolean checkEnded(long now) {
+        // a replay does not outlast the startup window, whatever arrives after it is live
+        if (!active || (now - lastArrival < quietNanos && now - startedAt < startupWindowNanos)) {
+            return false;
+        }
+        active = false;
+        metrics.set(METRIC_ACTIVE, 0);
+        metrics.max(METRIC_DURATION_NANOS_MAX, now - activeSince);
+        return true;
+    }
+
+    /**
+     * @return nanoseconds until catch-up may end, or -1 if it is not active
+     */
+    public long nanosUntilCheck(long now) {
+        if (!active) {
+            return -1;
+        }
+        return Math.max(0, Math.min(lastArrival + quietNanos, startedAt + startupWindowNanos) - now);
+    }
+
+    /**
+     * Returns and clears the digest of every device
+     */
+    public List<Digest> takeDigests() {
+        List<Digest> result = new ArrayList<Digest>(digests.size());
+        for (Map.Entry<UUID, Entry> entry : digests.entrySet()) {
+            Entry value = entry.getValue();
+            result.add(new Digest(entry.getKey(), value.deviceName, value.count, value.latestText));
+        }
+        digests.clear();
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * List that is appended to at the end and removed from anywhere. Each
+ * element gets an increasing sequence number when it is added, so removing
+ * is a binary search that leaves a hole in the element's slot rather than
+ * shifting the slots after it. The holes are closed by compact(), one pass
+ * for any number of removals. Until then slots keep their positions and
+ * get() returns null for a hole.
+ *
+ * Not thread safe.
+ */
+public class CompactingList<E> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements = new Object[INITIAL_CAPACITY];
+    private long[] sequences = new long[INITIAL_CAPACITY];
+    private int slotCount;
+    private int size;
+    private long nextSequence;
+
+    /**
+     * @return the sequence number that removes the element
+     */
+    public long add(E element) {
+        if (slotCount == elements.length) {
+            elements = Arrays.copyOf(elements, slotCount * 2);
+            sequences = Arrays.copyOf(sequences, slotCount * 2);
+        }
+        long sequence = nextSequence++;
+        elements[slotCount] = element;
+        sequences[slotCount] = sequence;
+        slotCount++;
+        size++;
+        return sequence;
+    }
+
+    /**
+     * @return true if the element added with the sequence number was in the list
+     */
+    public boolean remove(long sequence) {
+        int slot = Arrays.binarySearch(sequences, 0, slotCount, sequence);
+        if (slot < 0 || null == elements[slot]) {
+            return false;
+        }
+        elements[slot] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the element in the slot, null for a hole
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int slot) {
+        return (E) elements[slot];
+    }
+
+    /**
+     * @return the elements and holes
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasHoles() {
+        return size != slotCount;
+    }
+
+    /**
+     * Closes the holes, keeping the elements in order
+     */
+    public void compact() {
+        int to = 0;
+        for (int from = 0; from < slotCount; from++) {
+            if (null != elements[from]) {
+                elements[to] = elements[from];
+                sequences[to] = sequences[from];
+                to++;
+            }
+        }
+        Arrays.fill(elements, to, slotCount, null);
+        slotCount = to;
+    }
+}
@@ -0,0 +1,151 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Per-device token buckets in front of rendering. Each sender gets one bucket
+ * for its INFO and WARNING notifications. EMERGENCY is exempt: it is always
+ * let through and never charged, so a device that floods INFO cannot use up
+ * the budget of its own alerts, and an alert is never folded into a summary.
+ * Notifications that find the bucket empty are only counted; the counts are
+ * collected with {@link #takeSuppressed()} and shown as a single summary per
+ * device.
+ *
+ * Not thread safe, meant to be used by the single ingest consumer.
+ */
+public class DeviceRateLimiter {
+
+    public static final String METRIC_ACCEPTED = "ratelimit.accepted";
+    public static final String METRIC_SUPPRESSED = "ratelimit.suppressed";
+    public static final String METRIC_EXEMPT = "ratelimit.exempt";
+
+    private static final int MAX_TRACKED_DEVICES = 512;
+
+    /**
+     * Notifications that were not rendered for one device
+     */
+    public static final class Suppressed {
+        public final UUID appId;
+        public final String deviceName;
+        public final int count;
+
+        Suppressed(UUID appId, String deviceName, int count) {
+            this.appId = appId;
+            this.deviceName = deviceName;
+            this.count = count;
+        }
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long lastRefill;
+        int suppressed;
+        UUID appId;
+        String deviceName;
+    }
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final PipelineMetrics metrics;
+
+    private final Map<Object, Bucket> buckets = new LinkedHashMap<Object, Bucket>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Bucket> eldest) {
+            return size() > MAX_TRACKED_DEVICES && 0 == eldest.getValue().suppressed;
+        }
+    };
+
+    private final LinkedHashSet<Bucket> withSuppressed = new LinkedHashSet<Bucket>();
+
+    /**
+     * @param tokensPerMinute sustained rate per device, 0 disables limiting
+     * @param burst notifications a quiet device may send at once
+     */
+    public DeviceRateLimiter(int tokensPerMinute, int burst, PipelineMetrics metrics) {
+        this.tokensPerNano = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if the notification may be rendered, always for EMERGENCY, false if it was counted towards the device summary
+     */
+    public boolean tryAcquire(UUID appId, String deviceId, String deviceName, NotificationMessageType type) {
+        if (NotificationMessageType.EMERGENCY == type) {
+            metrics.increment(METRIC_EXEMPT);
+            return true;
+        }
+        if (tokensPerNano <= 0) {
+            return true;
+        }
+
+        Object key = (null != appId) ? appId : deviceId;
+        long now = System.nanoTime();
+        Bucket bucket = buckets.get(key);
+        if (null == bucket) {
+            bucket = new Bucket();
+            bucket.tokens = burst;
+            bucket.lastRefill = now;
+            buckets.put(key, bucket);
+        } else {
+            long elapsed = now - bucket.lastRefill;
+            bucket.tokens = Math.min(burst, bucket.tokens + elapsed * tokensPerNano);
+            bucket.lastRefill = now;
+        }
+        bucket.appId = appId;
+        bucket.deviceName = deviceName;
+
+        if (bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            metrics.increment(METRIC_ACCEPTED);
+            return true;
+        }
+        metrics.increment(METRIC_SUPPRESSED);
+        bucket.suppressed++;
+        withSuppressed.add(bucket);
+        return false;
+    }
+
+    public boolean hasSuppressed() {
+        return !withSuppressed.isEmpty();
+    }
+
+    /**
+     * Returns and resets the suppressed counts of every device that had any
+     */
+    public List<Suppressed> takeSuppressed() {
+        List<Suppressed> result = new ArrayList<Suppressed>(withSuppressed.size());
+        for (Bucket bucket : withSuppressed) {
+            result.add(new Suppressed(bucket.appId, bucket.deviceName, bucket.suppressed));
+            bucket.suppressed = 0;
+        }
+        withSuppressed.clear();
+        return result;
+    }
+}
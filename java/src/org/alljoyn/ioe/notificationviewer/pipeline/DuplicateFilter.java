@@ -0,0 +1,193 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Drops notifications whose (appId, messageId) was already seen within the
+ * configured window. Recent keys are kept in a small exact LRU; older ones
+ * in a pair of Bloom filters that rotate every window, or sooner once the
+ * current one holds as many keys as it was sized for, so memory stays fixed
+ * and the false positive rate stays near its target no matter how many
+ * notifications arrive. A key is remembered for at most two windows, and
+ * for at least one unless a storm rotated it out early. An EMERGENCY is
+ * only dropped on an exact match, never on a Bloom filter hit alone.
+ *
+ * Not thread safe, meant to be used by the single ingest consumer.
+ */
+public class DuplicateFilter {
+
+    public static final String METRIC_HITS_EXACT = "dedup.hits.exact";
+    public static final String METRIC_HITS_BLOOM = "dedup.hits.bloom";
+    public static final String METRIC_MISSES = "dedup.misses";
+    public static final String METRIC_ROTATIONS = "dedup.rotations";
+    public static final String METRIC_ROTATIONS_FULL = "dedup.rotations.full";
+    public static final String METRIC_BLOOM_PASSED = "dedup.bloom.passed";
+
+    private static final int EXACT_CACHE_SIZE = 128;
+
+    private final long windowNanos;
+    private final int expectedPerWindow;
+    private final int numBits;
+    private final int numHashes;
+    private final PipelineMetrics metrics;
+
+    private long[] currentBits;
+    private long[] previousBits;
+    private long lastRotation;
+    private int currentCount;
+
+    private final Map<Long, Long> recent = new LinkedHashMap<Long, Long>(EXACT_CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > EXACT_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * @param windowInMs how long a key is remembered, 0 disables the filter
+     * @param expectedPerWindow number of distinct notifications per window the Bloom filters are sized for
+     * @param falsePositiveRate target rate at which a new notification is mistaken for a repeat
+     */
+    public DuplicateFilter(long windowInMs, int expectedPerWindow, double falsePositiveRate, PipelineMetrics metrics) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowInMs);
+        this.metrics = metrics;
+
+        int n = Math.max(1, expectedPerWindow);
+        this.expectedPerWindow = n;
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-n * Math.log(p) / (ln2 * ln2));
+        this.numBits = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * ln2));
+
+        this.currentBits = new long[(numBits + 63) / 64];
+        this.previousBits = new long[currentBits.length];
+        this.lastRotation = System.nanoTime();
+    }
+
+    /**
+     * Records the key and reports whether it was seen before
+     *
+     * @return true if the notification is a repeat and should be dropped
+     */
+    public boolean isDuplicate(UUID appId, int messageId, NotificationMessageType messageType) {
+        if (windowNanos <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        rotateIfNeeded(now);
+
+        long key = key(appId, messageId);
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        boolean duplicate;
+        Long seenAt = recent.put(key, now);
+        if (null != seenAt) {
+            // the exact cache knows this key, so the Bloom filters are not consulted
+            duplicate = now - seenAt < windowNanos;
+            if (duplicate) {
+                metrics.increment(METRIC_HITS_EXACT);
+            }
+        } else {
+            duplicate = contains(currentBits, h1, h2) || contains(previousBits, h1, h2);
+            if (duplicate && NotificationMessageType.EMERGENCY == messageType) {
+                // may be a false positive, showing an EMERGENCY twice is the lesser harm
+                metrics.increment(METRIC_BLOOM_PASSED);
+                duplicate = false;
+            } else if (duplicate) {
+                metrics.increment(METRIC_HITS_BLOOM);
+            }
+        }
+        if (!duplicate) {
+            metrics.increment(METRIC_MISSES);
+        }
+        if (!contains(currentBits, h1, h2)) {
+            add(currentBits, h1, h2);
+            currentCount++;
+        }
+        return duplicate;
+    }
+
+    private void rotateIfNeeded(long now) {
+        if (currentCount >= expectedPerWindow) {
+            // past the size it was built for the false positive rate climbs quickly, so a storm rotates early
+            metrics.increment(METRIC_ROTATIONS_FULL);
+        } else if (now - lastRotation < windowNanos) {
+            return;
+        }
+        long[] recycled = previousBits;
+        Arrays.fill(recycled, 0);
+        // after two idle windows both generations are stale
+        previousBits = (now - lastRotation < 2 * windowNanos) ? currentBits : new long[currentBits.length];
+        currentBits = recycled;
+        currentCount = 0;
+        lastRotation = now;
+        metrics.increment(METRIC_ROTATIONS);
+    }
+
+    private boolean contains(long[] bits, long h1, long h2) {
+        for (int i = 0; i < numHashes; i++) {
+            int bit = index(h1 + i * h2);
+            if (0 == (bits[bit >>> 6] & (1L << bit))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(long[] bits, long h1, long h2) {
+        for (int i = 0; i < numHashes; i++) {
+            int bit = index(h1 + i * h2);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private int index(long hash) {
+        return (int) ((hash & Long.MAX_VALUE) % numBits);
+    }
+
+    private static long key(UUID appId, int messageId) {
+        long key = 0;
+        if (null != appId) {
+            key = appId.getMostSignificantBits() * 31 + appId.getLeastSignificantBits();
+        }
+        return key * 1000003 + messageId;
+    }
+
+    /**
+     * 64-bit finalizer from MurmurHash3
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
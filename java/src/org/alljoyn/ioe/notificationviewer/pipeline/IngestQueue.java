@@ -0,0 +1,209 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Ingest stage between the AllJoyn callback threads and the rendering side.
+ * Producers only publish into a {@link MpscRingBuffer}; a single consumer
+ * drains it. What happens when the buffer is full is decided by the
+ * {@link OverflowPolicy}.
+ */
+public class IngestQueue {
+
+    public enum OverflowPolicy {
+        /**
+         * Evict the oldest queued notification to make room
+         */
+        DROP_OLDEST,
+        /**
+         * Reject INFO notifications once the buffer passes its high-water mark,
+         * keeping the remaining room for WARNING and EMERGENCY. When the buffer
+         * is full, the head is only evicted for a notification of a higher
+         * type, so a queued EMERGENCY is never evicted; otherwise a WARNING is
+         * rejected and an EMERGENCY waits for the consumer up to the block
+         * timeout.
+         */
+        DROP_INFO_FIRST,
+        /**
+         * Wait for the consumer up to the configured timeout, then drop
+         */
+        BLOCK;
+
+        public static OverflowPolicy fromString(String value) {
+            if (null != value) {
+                for (OverflowPolicy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(value.trim())) {
+                        return policy;
+                    }
+                }
+            }
+            return DROP_INFO_FIRST;
+        }
+    }
+
+    public static final String METRIC_ENQUEUED = "ingest.enqueued";
+    public static final String METRIC_DROPPED_OLDEST = "ingest.dropped.oldest";
+    public static final String METRIC_DROPPED_INFO = "ingest.dropped.info";
+    public static final String METRIC_DROPPED_WARNING = "ingest.dropped.warning";
+    public static final String METRIC_DROPPED_TIMEOUT = "ingest.dropped.timeout";
+    public static final String METRIC_ENQUEUE_NANOS_TOTAL = "ingest.enqueueNanos.total";
+    public static final String METRIC_ENQUEUE_NANOS_MAX = "ingest.enqueueNanos.max";
+    public static final String METRIC_DEPTH_MAX = "ingest.depth.max";
+
+    /**
+     * Fraction of the capacity above which DROP_INFO_FIRST rejects INFO
+     */
+    private static final int INFO_HIGH_WATER_PERCENT = 75;
+
+    private static final int RANK_INFO = 0;
+    private static final int RANK_WARNING = 1;
+    private static final int RANK_EMERGENCY = 2;
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final MpscRingBuffer<NotificationRecord> ring;
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final int infoHighWater;
+    private final PipelineMetrics metrics;
+
+    public IngestQueue(int capacity, OverflowPolicy policy, long blockTimeoutInMs, PipelineMetrics metrics) {
+        this.ring = new MpscRingBuffer<NotificationRecord>(capacity);
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutInMs);
+        this.infoHighWater = ring.capacity() * INFO_HIGH_WATER_PERCENT / 100;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Called from the AllJoyn callback threads.
+     *
+     * @return true if the notification was queued
+     */
+    public boolean publish(NotificationRecord notification) {
+        long start = System.nanoTime();
+        boolean accepted;
+        switch (policy) {
+        case BLOCK:
+            accepted = publishBlocking(notification, start);
+            break;
+
+        case DROP_INFO_FIRST:
+            if (RANK_INFO == rank(notification) && ring.size() >= infoHighWater) {
+                metrics.increment(METRIC_DROPPED_INFO);
+                accepted = false;
+            } else {
+                accepted = publishDroppingLower(notification, start);
+            }
+            break;
+
+        default:
+            accepted = publishDroppingOldest(notification);
+            break;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        metrics.add(METRIC_ENQUEUE_NANOS_TOTAL, elapsed);
+        metrics.max(METRIC_ENQUEUE_NANOS_MAX, elapsed);
+        if (accepted) {
+            metrics.increment(METRIC_ENQUEUED);
+            metrics.max(METRIC_DEPTH_MAX, ring.size());
+        }
+        return accepted;
+    }
+
+    private boolean publishDroppingOldest(NotificationRecord notification) {
+        while (!ring.offer(notification)) {
+            if (null != ring.poll()) {
+                metrics.increment(METRIC_DROPPED_OLDEST);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evicts the head only while it is of a lower type than the notification
+     */
+    private boolean publishDroppingLower(NotificationRecord notification, long start) {
+        int rank = rank(notification);
+        while (!ring.offer(notification)) {
+            NotificationRecord head = ring.peek();
+            if (null == head) {
+                // drained meanwhile
+                continue;
+            }
+            if (rank(head) < rank) {
+                if (ring.pollIf(head)) {
+                    metrics.increment(METRIC_DROPPED_OLDEST);
+                }
+                continue;
+            }
+            if (RANK_EMERGENCY != rank) {
+                metrics.increment((RANK_INFO == rank) ? METRIC_DROPPED_INFO : METRIC_DROPPED_WARNING);
+                return false;
+            }
+            // nothing below EMERGENCY at the head, wait for the consumer rather than evict another alert
+            if (System.nanoTime() - start >= blockTimeoutNanos) {
+                metrics.increment(METRIC_DROPPED_TIMEOUT);
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private boolean publishBlocking(NotificationRecord notification, long start) {
+        while (!ring.offer(notification)) {
+            if (System.nanoTime() - start >= blockTimeoutNanos) {
+                metrics.increment(METRIC_DROPPED_TIMEOUT);
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Called from the single consumer.
+     *
+     * @return the oldest queued notification, or null if none
+     */
+    public NotificationRecord poll() {
+        return ring.poll();
+    }
+
+    public int size() {
+        return ring.size();
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private static int rank(NotificationRecord notification) {
+        NotificationMessageType type = notification.getMessageType();
+        if (NotificationMessageType.EMERGENCY == type) {
+            return RANK_EMERGENCY;
+        }
+        return (NotificationMessageType.WARNING == type) ? RANK_WARNING : RANK_INFO;
+    }
+}
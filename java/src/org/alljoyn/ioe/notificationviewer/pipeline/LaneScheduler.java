@@ -0,0 +1,237 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * One FIFO lane per {@link NotificationMessageType}. EMERGENCY is always
+ * served first. WARNING and INFO are served either in strict priority order
+ * or by weight, and a lane whose head has waited longer than the configured
+ * maximum is served next regardless, so INFO cannot starve.
+ *
+ * Any thread may {@link #offer}; {@link #poll} must be called from a single
+ * consumer thread.
+ *
+ * @param <E> element type
+ */
+public class LaneScheduler<E> {
+
+    public enum Policy {
+        STRICT, WEIGHTED;
+
+        public static Policy fromString(String value) {
+            if (null != value) {
+                for (Policy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(value.trim())) {
+                        return policy;
+                    }
+                }
+            }
+            return STRICT;
+        }
+    }
+
+    public static final String METRIC_PROMOTED = "lanes.promoted";
+
+    private static final int LANE_EMERGENCY = 0;
+    private static final int LANE_WARNING = 1;
+    private static final int LANE_INFO = 2;
+    private static final String[] LANE_NAMES = { "EMERGENCY", "WARNING", "INFO" };
+    private static final String[] METRIC_SERVED = new String[LANE_NAMES.length];
+    private static final String[] METRIC_WAIT_NANOS_TOTAL = new String[LANE_NAMES.length];
+    private static final String[] METRIC_WAIT_NANOS_MAX = new String[LANE_NAMES.length];
+    static {
+        for (int i = 0; i < LANE_NAMES.length; i++) {
+            METRIC_SERVED[i] = "lanes." + LANE_NAMES[i] + ".served";
+            METRIC_WAIT_NANOS_TOTAL[i] = "lanes." + LANE_NAMES[i] + ".waitNanos.total";
+            METRIC_WAIT_NANOS_MAX[i] = "lanes." + LANE_NAMES[i] + ".waitNanos.max";
+        }
+    }
+
+    private static final class Item<E> {
+        final E element;
+        final long enqueuedAt;
+
+        Item(E element, long enqueuedAt) {
+            this.element = element;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Item<E>>[] lanes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Policy policy;
+    private final int[] weights;
+    private final long maxWaitNanos;
+    private final PipelineMetrics metrics;
+
+    // consumer side only
+    private final int[] credits;
+
+    /**
+     * @param weights of WARNING and INFO, in that order, only used by {@link Policy#WEIGHTED}; EMERGENCY
+     *            always goes first so it has none
+     * @param maxWaitInMs how long the head of a lower lane may wait before it is served, 0 disables
+     */
+    @SuppressWarnings("unchecked")
+    public LaneScheduler(Policy policy, int[] weights, long maxWaitInMs, PipelineMetrics metrics) {
+        this.lanes = (ConcurrentLinkedQueue<Item<E>>[]) new ConcurrentLinkedQueue<?>[LANE_NAMES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<Item<E>>();
+        }
+        this.policy = policy;
+        this.weights = new int[LANE_NAMES.length];
+        for (int lane = LANE_WARNING; lane < this.weights.length; lane++) {
+            int i = lane - LANE_WARNING;
+            this.weights[lane] = (null != weights && i < weights.length) ? Math.max(1, weights[i]) : 1;
+        }
+        this.credits = this.weights.clone();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitInMs);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Parses the WARNING and INFO weights given as a comma separated list,
+     * e.g. "4,1"
+     *
+     * @return the weights, or null if the list does not hold exactly two
+     */
+    public static int[] parseWeights(String value) {
+        if (null == value) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (LANE_NAMES.length - LANE_WARNING != parts.length) {
+            return null;
+        }
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                weights[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException nfe) {
+                weights[i] = 1;
+            }
+        }
+        return weights;
+    }
+
+    public void offer(NotificationMessageType type, E element) {
+        lanes[laneOf(type)].add(new Item<E>(element, System.nanoTime()));
+        size.incrementAndGet();
+    }
+
+    /**
+     * @return the next element to serve, or null if all lanes are empty
+     */
+    public E poll() {
+        if (0 == size.get()) {
+            return null;
+        }
+        long now = System.nanoTime();
+        int lane = selectLane(now);
+        if (lane < 0) {
+            return null;
+        }
+        Item<E> item = lanes[lane].poll();
+        if (null == item) {
+            return null;
+        }
+        size.decrementAndGet();
+
+        long waited = now - item.enqueuedAt;
+        metrics.increment(METRIC_SERVED[lane]);
+        metrics.add(METRIC_WAIT_NANOS_TOTAL[lane], waited);
+        metrics.max(METRIC_WAIT_NANOS_MAX[lane], waited);
+        return item.element;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size.get();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private int selectLane(long now) {
+        if (!lanes[LANE_EMERGENCY].isEmpty()) {
+            return LANE_EMERGENCY;
+        }
+
+        // starvation protection, the lowest lane that waited too long goes first
+        if (maxWaitNanos > 0) {
+            for (int lane = lanes.length - 1; lane > LANE_EMERGENCY; lane--) {
+                Item<E> head = lanes[lane].peek();
+                if (null != head && now - head.enqueuedAt > maxWaitNanos) {
+                    if (lane != firstNonEmpty()) {
+                        metrics.increment(METRIC_PROMOTED);
+                    }
+                    return lane;
+                }
+            }
+        }
+
+        if (Policy.WEIGHTED == policy) {
+            return selectWeighted();
+        }
+        return firstNonEmpty();
+    }
+
+    private int selectWeighted() {
+        for (int round = 0; round < 2; round++) {
+            for (int lane = LANE_WARNING; lane < lanes.length; lane++) {
+                if (credits[lane] > 0 && !lanes[lane].isEmpty()) {
+                    credits[lane]--;
+                    return lane;
+                }
+            }
+            // every non-empty lane used its share, start a new round
+            for (int lane = 0; lane < credits.length; lane++) {
+                credits[lane] = weights[lane];
+            }
+        }
+        return firstNonEmpty();
+    }
+
+    private int firstNonEmpty() {
+        for (int lane = 0; lane < lanes.length; lane++) {
+            if (!lanes[lane].isEmpty()) {
+                return lane;
+            }
+        }
+        return -1;
+    }
+
+    private static int laneOf(NotificationMessageType type) {
+        if (null == type) {
+            return LANE_INFO;
+        }
+        switch (type) {
+        case EMERGENCY:
+            return LANE_EMERGENCY;
+        case WARNING:
+            return LANE_WARNING;
+        default:
+            return LANE_INFO;
+        }
+    }
+}
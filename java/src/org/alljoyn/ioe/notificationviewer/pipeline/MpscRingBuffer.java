@@ -0,0 +1,153 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer. Each slot carries a sequence number, so
+ * producers claim a slot with a single CAS on the tail and the consumer with
+ * a single CAS on the head. {@link #poll()} and {@link #pollIf(Object)} are
+ * also safe to call from a producer, which is how the overflow policies
+ * evict the head.
+ *
+ * @param <E> element type
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param requestedCapacity rounded up to the next power of two
+     */
+    public MpscRingBuffer(int requestedCapacity) {
+        int capacity = 2;
+        while (capacity < requestedCapacity) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        buffer = new AtomicReferenceArray<E>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.set(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if the buffer is empty
+     */
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = buffer.get(index);
+                    buffer.set(index, null);
+                    // hands the slot back to the producers for the next lap
+                    sequences.set(index, pos + mask + 1);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element without removing it, or null if the buffer is empty
+     */
+    public E peek() {
+        long pos = head.get();
+        int index = (int) (pos & mask);
+        if (sequences.get(index) - (pos + 1) != 0) {
+            return null;
+        }
+        return buffer.get(index);
+    }
+
+    /**
+     * Removes the oldest element only if it is still the expected one, so a
+     * producer can evict a head it looked at with {@link #peek()}.
+     *
+     * @return false if the head was taken or replaced meanwhile
+     */
+    public boolean pollIf(E expected) {
+        long pos = head.get();
+        int index = (int) (pos & mask);
+        if (sequences.get(index) - (pos + 1) != 0 || buffer.get(index) != expected) {
+            return false;
+        }
+        // while the head stays at pos no producer can write this slot, so the element checked is the one removed
+        if (!head.compareAndSet(pos, pos + 1)) {
+            return false;
+        }
+        buffer.set(index, null);
+        sequences.set(index, pos + mask + 1);
+        return true;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, capacity());
+    }
+
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
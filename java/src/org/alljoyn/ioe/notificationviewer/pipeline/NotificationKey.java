@@ -0,0 +1,64 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.UUID;
+
+/**
+ * Identifies a notification the way producers do when dismissing it: by the
+ * sending application and the message id.
+ */
+public final class NotificationKey {
+
+    private final UUID appId;
+    private final int messageId;
+
+    public NotificationKey(UUID appId, int messageId) {
+        this.appId = appId;
+        this.messageId = messageId;
+    }
+
+    public UUID getAppId() {
+        return appId;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (null != appId ? appId.hashCode() : 0) + messageId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NotificationKey)) {
+            return false;
+        }
+        NotificationKey other = (NotificationKey) obj;
+        return messageId == other.messageId && (null == appId ? null == other.appId : appId.equals(other.appId));
+    }
+
+    @Override
+    public String toString() {
+        return appId + "/" + messageId;
+    }
+}
@@ -0,0 +1,149 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alljoyn.ns.Notification;
+import org.alljoyn.ns.NotificationMessageType;
+import org.alljoyn.ns.NotificationText;
+
+/**
+ * What the viewer keeps of a received {@link Notification}. Built once on the
+ * AllJoyn callback thread, so the original object with its custom attributes,
+ * every language variant and its URLs can be released right away. The text is
+ * already resolved to the display language and normalized, and device names
+ * and ids are shared between the records of the same device.
+ */
+public final class NotificationRecord {
+
+    /**
+     * Bounds the pool of shared device strings, past it strings are simply not shared
+     */
+    private static final int MAX_POOLED_STRINGS = 1024;
+
+    private static final ConcurrentHashMap<String, String> STRING_POOL = new ConcurrentHashMap<String, String>();
+
+    private final UUID appId;
+    private final int messageId;
+    private final NotificationMessageType messageType;
+    private final String deviceId;
+    private final String deviceName;
+    private final String text;
+    private final String richIconUrl;
+    private final long receivedAtNanos;
+
+    public NotificationRecord(UUID appId, int messageId, NotificationMessageType messageType, String deviceId, String deviceName, String text,
+            String richIconUrl) {
+        this.appId = appId;
+        this.messageId = messageId;
+        this.messageType = messageType;
+        this.deviceId = pooled(deviceId);
+        this.deviceName = pooled(deviceName);
+        this.text = (null != text) ? text : "";
+        this.richIconUrl = richIconUrl;
+        this.receivedAtNanos = System.nanoTime();
+    }
+
+    /**
+     * @param languageTag language the text is resolved to, the first variant is used if it is missing
+     * @param normalizer cleans and caps the resolved text, so an oversized payload is not kept past this call
+     */
+    public static NotificationRecord from(Notification notification, String languageTag, TextNormalizer normalizer) {
+        NotificationMessageType messageType = notification.getMessageType();
+        // only the emergency view shows an image
+        String richIconUrl = (NotificationMessageType.EMERGENCY == messageType) ? notification.getRichIconUrl() : null;
+        String text = normalizer.normalize(resolveText(notification.getText(), languageTag), messageType);
+        return new NotificationRecord(notification.getAppId(), notification.getMessageId(), messageType, notification.getDeviceId(),
+                notification.getDeviceName(), text, richIconUrl);
+    }
+
+    private static String resolveText(List<NotificationText> notificationTextList, String languageTag) {
+        if (null == notificationTextList) {
+            return "";
+        }
+        for (NotificationText nt : notificationTextList) {
+            if (nt.getLanguage().equalsIgnoreCase(languageTag)) {
+                return nt.getText();
+            }
+        }
+        if (!notificationTextList.isEmpty()) {
+            return notificationTextList.get(0).getText();
+        }
+        return "";
+    }
+
+    private static String pooled(String value) {
+        if (null == value) {
+            return null;
+        }
+        String shared = STRING_POOL.get(value);
+        if (null != shared) {
+            return shared;
+        }
+        if (STRING_POOL.size() >= MAX_POOLED_STRINGS) {
+            return value;
+        }
+        shared = STRING_POOL.putIfAbsent(value, value);
+        return (null != shared) ? shared : value;
+    }
+
+    public UUID getAppId() {
+        return appId;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public NotificationMessageType getMessageType() {
+        return messageType;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getDeviceName() {
+        return deviceName;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the image URL of an EMERGENCY notification, null for the other types
+     */
+    public String getRichIconUrl() {
+        return richIconUrl;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the record was built
+     */
+    public long getReceivedAtNanos() {
+        return receivedAtNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Id: '%s', MessageType: '%s' DeviceId: '%s', DeviceName: '%s', Text: '%s'", messageId, messageType, deviceId, deviceName, text);
+    }
+}
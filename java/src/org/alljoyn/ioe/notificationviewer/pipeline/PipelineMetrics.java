@@ -0,0 +1,86 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named counters and gauges shared by the notification pipeline stages.
+ * Safe to update from any thread.
+ */
+public class PipelineMetrics {
+
+    private final ConcurrentMap<String, AtomicLong> values = new ConcurrentHashMap<String, AtomicLong>();
+
+    public void increment(String name) {
+        get(name).incrementAndGet();
+    }
+
+    public void add(String name, long delta) {
+        get(name).addAndGet(delta);
+    }
+
+    public void set(String name, long value) {
+        get(name).set(value);
+    }
+
+    /**
+     * Raises the named value to {@code value} if it is currently lower
+     */
+    public void max(String name, long value) {
+        AtomicLong current = get(name);
+        long prev = current.get();
+        while (value > prev && !current.compareAndSet(prev, value)) {
+            prev = current.get();
+        }
+    }
+
+    public long getValue(String name) {
+        AtomicLong value = values.get(name);
+        return (null != value) ? value.get() : 0;
+    }
+
+    private AtomicLong get(String name) {
+        AtomicLong value = values.get(name);
+        if (null == value) {
+            AtomicLong newValue = new AtomicLong();
+            value = values.putIfAbsent(name, newValue);
+            if (null == value) {
+                value = newValue;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PipelineMetrics{");
+        boolean first = true;
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(values).entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue().get());
+            first = false;
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,112 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long a card stays on screen. Quiet traffic gets the full
+ * configured timeout. Under load, the timeout shrinks linearly towards
+ * the minimum. Load is the larger of two ratios, each capped at 1:
+ * <ul>
+ * <li>the number of other cards shown or waiting, over the depth that counts as full load</li>
+ * <li>the recent arrival rate, over the rate that counts as full load</li>
+ * </ul>
+ * The arrival rate is an exponentially decaying average, so the timeout
+ * drifts back to the full value once a storm is over.
+ *
+ * Not thread safe, meant to be used on the main thread.
+ */
+public class PopupTimeoutPolicy {
+
+    public static final String METRIC_EFFECTIVE_MS = "timeout.effectiveMs";
+    public static final String METRIC_EFFECTIVE_MS_MIN = "timeout.effectiveMs.min";
+
+    /**
+     * Time constant of the arrival rate average
+     */
+    private static final long RATE_DECAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final long maxTimeoutInMs;
+    private final long minTimeoutInMs;
+    private final int fullLoadDepth;
+    private final double fullLoadArrivalsPerNano;
+    private final PipelineMetrics metrics;
+
+    private double arrivalsPerNano;
+    private long lastArrival;
+    private long lowestTimeoutInMs = Long.MAX_VALUE;
+
+    /**
+     * @param maxTimeoutInMs timeout when traffic is quiet
+     * @param minTimeoutInMs timeout at full load, a value not below maxTimeoutInMs turns adapting off
+     * @param fullLoadDepth cards shown or waiting that count as full load, 0 ignores depth
+     * @param fullLoadArrivalsPerSecond arrival rate that counts as full load, 0 ignores the rate
+     */
+    public PopupTimeoutPolicy(long maxTimeoutInMs, long minTimeoutInMs, int fullLoadDepth, int fullLoadArrivalsPerSecond, PipelineMetrics metrics) {
+        this.maxTimeoutInMs = maxTimeoutInMs;
+        this.minTimeoutInMs = Math.max(0, Math.min(minTimeoutInMs, maxTimeoutInMs));
+        this.fullLoadDepth = fullLoadDepth;
+        this.fullLoadArrivalsPerNano = fullLoadArrivalsPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.metrics = metrics;
+    }
+
+    public long getMaxTimeoutInMs() {
+        return maxTimeoutInMs;
+    }
+
+    /**
+     * Counts a card towards the arrival rate
+     */
+    public void onArrival(long now) {
+        arrivalsPerNano = decayedRate(now) + 1.0 / RATE_DECAY_NANOS;
+        lastArrival = now;
+    }
+
+    /**
+     * @param depth other cards shown or waiting to be shown
+     * @return the timeout for a card shown now, to be asked before the card is counted by onArrival()
+     */
+    public long timeoutInMs(int depth, long now) {
+        long timeout = maxTimeoutInMs;
+        if (minTimeoutInMs < maxTimeoutInMs) {
+            double load = 0;
+            if (fullLoadDepth > 0) {
+                load = depth / (double) fullLoadDepth;
+            }
+            if (fullLoadArrivalsPerNano > 0) {
+                load = Math.max(load, decayedRate(now) / fullLoadArrivalsPerNano);
+            }
+            load = Math.min(1, load);
+            timeout = maxTimeoutInMs - Math.round((maxTimeoutInMs - minTimeoutInMs) * load);
+        }
+
+        metrics.set(METRIC_EFFECTIVE_MS, timeout);
+        if (timeout < lowestTimeoutInMs) {
+            lowestTimeoutInMs = timeout;
+            metrics.set(METRIC_EFFECTIVE_MS_MIN, timeout);
+        }
+        return timeout;
+    }
+
+    private double decayedRate(long now) {
+        if (0 == arrivalsPerNano) {
+            return 0;
+        }
+        return arrivalsPerNano * Math.exp(-(now - lastArrival) / (double) RATE_DECAY_NANOS);
+    }
+}
@@ -0,0 +1,103 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small pool of worker threads that prepare notifications before they are
+ * rendered. Each worker has its own FIFO queue and is picked by a stripe
+ * key, the appId. The notifications of one device are therefore prepared
+ * one after the other, in the order they were submitted, while different
+ * devices are prepared in parallel. With no workers, tasks run on the
+ * calling thread.
+ *
+ * Safe to use from any thread.
+ */
+public class PreRenderPool {
+
+    public static final String METRIC_TASKS = "prerender.tasks";
+    public static final String METRIC_WORK_NANOS_TOTAL = "prerender.workNanos.total";
+    public static final String METRIC_QUEUE_NANOS_MAX = "prerender.queueNanos.max";
+    public static final String METRIC_BACKLOG_MAX = "prerender.backlog.max";
+
+    private final ExecutorService[] workers;
+    private final AtomicInteger backlog = new AtomicInteger();
+    private final PipelineMetrics metrics;
+
+    /**
+     * @param workerCount worker threads, 0 runs every task on the submitting thread
+     */
+    public PreRenderPool(int workerCount, PipelineMetrics metrics) {
+        this.workers = new ExecutorService[Math.max(0, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            final String name = "PreRender-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the task after every task submitted earlier with an equal stripe key
+     */
+    public void execute(Object stripeKey, final Runnable task) {
+        if (0 == workers.length) {
+            run(task, System.nanoTime());
+            return;
+        }
+        int stripe = (null != stripeKey) ? (stripeKey.hashCode() & Integer.MAX_VALUE) % workers.length : 0;
+        final long submittedAt = System.nanoTime();
+        metrics.max(METRIC_BACKLOG_MAX, backlog.incrementAndGet());
+        try {
+            workers[stripe].execute(new Runnable() {
+                @Override
+                public void run() {
+                    backlog.decrementAndGet();
+                    PreRenderPool.this.run(task, submittedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down, the viewer is going away
+            backlog.decrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+    private void run(Runnable task, long submittedAt) {
+        long start = System.nanoTime();
+        task.run();
+        metrics.increment(METRIC_TASKS);
+        metrics.max(METRIC_QUEUE_NANOS_MAX, start - submittedAt);
+        metrics.add(METRIC_WORK_NANOS_TOTAL, System.nanoTime() - start);
+    }
+}
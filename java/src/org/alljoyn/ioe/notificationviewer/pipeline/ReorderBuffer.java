@@ -0,0 +1,233 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Puts the notifications of each appId back in messageId order. Only a gap
+ * holds anything: a notification whose messageId skips past the one expected
+ * next opens a hold window for its appId, and whatever arrives for that appId
+ * within the window is released together, sorted, when the window ends, or as
+ * soon as the missing notification fills the gap. The first notification of
+ * an appId, the one expected next and one older than what was already shown
+ * are never held, nor is EMERGENCY, which releases everything held for its
+ * appId along with it. A messageId far below the last one shown means the
+ * producer restarted, it releases what is held and starts a new sequence.
+ *
+ * Not thread safe, meant to be used by the single ingest consumer.
+ */
+public class ReorderBuffer {
+
+    public static final String METRIC_PASSED = "reorder.passed";
+    public static final String METRIC_HELD = "reorder.held";
+    public static final String METRIC_REORDERED = "reorder.reordered";
+    public static final String METRIC_RESTARTS = "reorder.restarts";
+    public static final String METRIC_DEPTH = "reorder.depth";
+    public static final String METRIC_DEPTH_MAX = "reorder.depth.max";
+    public static final String METRIC_HOLD_NANOS_TOTAL = "reorder.holdNanos.total";
+    public static final String METRIC_HOLD_NANOS_MAX = "reorder.holdNanos.max";
+
+    /**
+     * Past this many held notifications an appId is released early, bounding the memory per appId
+     */
+    private static final int MAX_HELD_PER_APP = 64;
+
+    /**
+     * A messageId further than this below the last one released starts a new sequence
+     */
+    private static final int MAX_BACKWARD_JUMP = MAX_HELD_PER_APP;
+
+    private static final int MAX_TRACKED_APPS = 512;
+
+    /**
+     * messageId order that survives the id wrapping around, arrival order for equal ids
+     */
+    private static final Comparator<NotificationRecord> ORDER = new Comparator<NotificationRecord>() {
+        @Override
+        public int compare(NotificationRecord lhs, NotificationRecord rhs) {
+            int diff = lhs.getMessageId() - rhs.getMessageId();
+            if (0 != diff) {
+                return diff < 0 ? -1 : 1;
+            }
+            long age = lhs.getReceivedAtNanos() - rhs.getReceivedAtNanos();
+            return age < 0 ? -1 : (age > 0 ? 1 : 0);
+        }
+    };
+
+    private static final class Pending {
+        final PriorityQueue<NotificationRecord> records = new PriorityQueue<NotificationRecord>(8, ORDER);
+        long deadline;
+        boolean hasReleased;
+        int lastReleasedId;
+    }
+
+    private final long holdNanos;
+    private final PipelineMetrics metrics;
+
+    private final Map<UUID, Pending> pendingByApp = new LinkedHashMap<UUID, Pending>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Pending> eldest) {
+            return size() > MAX_TRACKED_APPS && eldest.getValue().records.isEmpty();
+        }
+    };
+
+    private int depth;
+
+    /**
+     * @param holdInMs how long out of order notifications are held, 0 disables reordering
+     */
+    public ReorderBuffer(long holdInMs, PipelineMetrics metrics) {
+        this.holdNanos = TimeUnit.MILLISECONDS.toNanos(holdInMs);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Adds the record, then appends whatever may be shown now to released
+     */
+    public void offer(NotificationRecord record, long now, List<NotificationRecord> released) {
+        if (holdNanos <= 0 || null == record.getAppId()) {
+            metrics.increment(METRIC_PASSED);
+            released.add(record);
+            return;
+        }
+
+        Pending pending = pendingByApp.get(record.getAppId());
+        if (null == pending) {
+            pending = new Pending();
+            pendingByApp.put(record.getAppId(), pending);
+        }
+
+        int gap = pending.hasReleased ? record.getMessageId() - (pending.lastReleasedId + 1) : 0;
+        if (gap < -MAX_BACKWARD_JUMP) {
+            // the producer restarted, nothing held will be followed by its missing ids any more
+            metrics.increment(METRIC_RESTARTS);
+            release(pending, now, released);
+            gap = 0;
+        }
+        if (gap < 0) {
+            // already overtaken by what was shown, holding it cannot restore the order
+            metrics.increment(METRIC_PASSED);
+            released.add(record);
+            return;
+        }
+        if (0 == gap) {
+            metrics.increment(METRIC_PASSED);
+            pending.hasReleased = true;
+            pending.lastReleasedId = record.getMessageId();
+            released.add(record);
+            releaseInSequence(pending, now, record.getReceivedAtNanos(), released);
+            return;
+        }
+
+        if (pending.records.isEmpty()) {
+            pending.deadline = now + holdNanos;
+        }
+        pending.records.add(record);
+        setDepth(depth + 1);
+        metrics.increment(METRIC_HELD);
+
+        if (NotificationMessageType.EMERGENCY == record.getMessageType() || pending.records.size() > MAX_HELD_PER_APP) {
+            release(pending, now, released);
+        }
+    }
+
+    /**
+     * Appends the records whose hold window ended to released
+     */
+    public void releaseExpired(long now, List<NotificationRecord> released) {
+        if (0 == depth) {
+            return;
+        }
+        Iterator<Pending> iterator = pendingByApp.values().iterator();
+        while (iterator.hasNext()) {
+            Pending pending = iterator.next();
+            if (!pending.records.isEmpty() && now - pending.deadline >= 0) {
+                release(pending, now, released);
+            }
+        }
+    }
+
+    /**
+     * @return nanoseconds until the next hold window ends, or -1 if nothing is held
+     */
+    public long nanosUntilNextRelease(long now) {
+        if (0 == depth) {
+            return -1;
+        }
+        long next = Long.MAX_VALUE;
+        for (Pending pending : pendingByApp.values()) {
+            if (!pending.records.isEmpty()) {
+                next = Math.min(next, Math.max(0, pending.deadline - now));
+            }
+        }
+        return (Long.MAX_VALUE == next) ? -1 : next;
+    }
+
+    private void release(Pending pending, long now, List<NotificationRecord> released) {
+        long lastArrival = Long.MIN_VALUE;
+        NotificationRecord record;
+        while (null != (record = pending.records.poll())) {
+            lastArrival = releaseHeld(pending, record, now, lastArrival, released);
+        }
+    }
+
+    /**
+     * Releases the held records that directly follow the last one released
+     */
+    private void releaseInSequence(Pending pending, long now, long lastArrival, List<NotificationRecord> released) {
+        NotificationRecord record;
+        while (null != (record = pending.records.peek()) && record.getMessageId() == pending.lastReleasedId + 1) {
+            pending.records.poll();
+            lastArrival = releaseHeld(pending, record, now, lastArrival, released);
+        }
+    }
+
+    /**
+     * @return the latest arrival released so far
+     */
+    private long releaseHeld(Pending pending, NotificationRecord record, long now, long lastArrival, List<NotificationRecord> released) {
+        long held = now - record.getReceivedAtNanos();
+        metrics.add(METRIC_HOLD_NANOS_TOTAL, held);
+        metrics.max(METRIC_HOLD_NANOS_MAX, held);
+        if (Long.MIN_VALUE != lastArrival && record.getReceivedAtNanos() < lastArrival) {
+            metrics.increment(METRIC_REORDERED);
+        }
+        pending.hasReleased = true;
+        pending.lastReleasedId = record.getMessageId();
+        released.add(record);
+        setDepth(depth - 1);
+        return Math.max(lastArrival, record.getReceivedAtNanos());
+    }
+
+    private void setDepth(int value) {
+        depth = value;
+        metrics.set(METRIC_DEPTH, value);
+        metrics.max(METRIC_DEPTH_MAX, value);
+    }
+}
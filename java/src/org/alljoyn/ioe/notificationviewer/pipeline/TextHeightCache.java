@@ -0,0 +1,96 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of text heights, keyed by (text hash, width,
+ * paint config). The text is kept with each height to tell apart texts whose
+ * hashes collide.
+ *
+ * Safe to use from any thread.
+ */
+public class TextHeightCache {
+
+    private static final class Key {
+        final int textHash;
+        final int width;
+        final int paintConfig;
+
+        Key(String text, int width, int paintConfig) {
+            this.textHash = text.hashCode();
+            this.width = width;
+            this.paintConfig = paintConfig;
+        }
+
+        @Override
+        public int hashCode() {
+            return (textHash * 31 + width) * 31 + paintConfig;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return textHash == other.textHash && width == other.width && paintConfig == other.paintConfig;
+        }
+    }
+
+    private static final class Result {
+        final String text;
+        final int height;
+
+        Result(String text, int height) {
+            this.text = text;
+            this.height = height;
+        }
+    }
+
+    private final Map<Key, Result> cache;
+
+    public TextHeightCache(final int maxCached) {
+        this.cache = new LinkedHashMap<Key, Result>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > maxCached;
+            }
+        };
+    }
+
+    /**
+     * @return the cached height, or -1 if the text was not measured with this width and paint
+     */
+    public int get(String text, int width, int paintConfig) {
+        Result result;
+        synchronized (cache) {
+            result = cache.get(new Key(text, width, paintConfig));
+        }
+        return (null != result && result.text.equals(text)) ? result.height : -1;
+    }
+
+    public void put(String text, int width, int paintConfig, int height) {
+        synchronized (cache) {
+            cache.put(new Key(text, width, paintConfig), new Result(text, height));
+        }
+    }
+}
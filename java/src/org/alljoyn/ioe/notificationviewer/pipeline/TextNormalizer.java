@@ -0,0 +1,126 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+/**
+ * Cleans notification text at ingest, before it is queued, measured or laid
+ * out. Control characters are stripped, runs of whitespace collapse into a
+ * single space and the text is cut to a character budget with an ellipsis.
+ * The budget is either configured, or derived from the lines and width of a
+ * card once the main thread laid one out, as an upper bound of what a card
+ * can show. EMERGENCY text has its own, larger budget, as its view has room
+ * for more.
+ *
+ * Safe to use from any thread.
+ */
+public class TextNormalizer {
+
+    public static final String METRIC_NORMALIZED = "text.normalized";
+    public static final String METRIC_TRUNCATED = "text.truncated";
+    public static final String METRIC_LENGTH_MAX = "text.length.max";
+
+    /**
+     * Budget until the card layout is known
+     */
+    private static final int DEFAULT_MAX_CHARS = 512;
+    private static final int EMERGENCY_MAX_CHARS = 2048;
+    private static final char ELLIPSIS = '\u2026';
+
+    private final boolean configured;
+    private final PipelineMetrics metrics;
+    private volatile int maxChars;
+
+    /**
+     * @param maxChars budget for every non EMERGENCY text, 0 derives it from the card layout
+     */
+    public TextNormalizer(int maxChars, PipelineMetrics metrics) {
+        this.configured = maxChars > 0;
+        this.maxChars = configured ? maxChars : DEFAULT_MAX_CHARS;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Derives the budget from the card layout, unless one was configured
+     *
+     * @param narrowestCharWidth width of a narrow glyph in the card's paint, so the budget errs on the long side
+     */
+    public void fitLayout(int lines, int width, float narrowestCharWidth) {
+        if (configured || width <= 0) {
+            return;
+        }
+        int charsPerLine = (int) Math.ceil(width / Math.max(1f, narrowestCharWidth));
+        maxChars = Math.max(1, lines * charsPerLine);
+    }
+
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    /**
+     * @return the normalized text, the same instance if there was nothing to change
+     */
+    public String normalize(String text, NotificationMessageType messageType) {
+        if (null == text) {
+            return null;
+        }
+        int length = text.length();
+        metrics.max(METRIC_LENGTH_MAX, length);
+        int budget = (NotificationMessageType.EMERGENCY == messageType) ? EMERGENCY_MAX_CHARS : maxChars;
+
+        // only the part that can be kept is ever scanned, a huge payload costs no more than a short one
+        StringBuilder normalized = new StringBuilder(Math.min(length, budget));
+        boolean pendingSpace = false;
+        boolean truncated = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (Character.isISOControl(c)) {
+                continue;
+            }
+            if (normalized.length() + (pendingSpace ? 1 : 0) >= budget) {
+                truncated = true;
+                break;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(c);
+        }
+
+        if (truncated) {
+            normalized.setLength(Math.max(0, budget - 1));
+            int last = normalized.length() - 1;
+            // never leave half of a surrogate pair or a space before the ellipsis
+            while (last >= 0 && (Character.isHighSurrogate(normalized.charAt(last)) || ' ' == normalized.charAt(last))) {
+                normalized.setLength(last--);
+            }
+            normalized.append(ELLIPSIS);
+            metrics.increment(METRIC_TRUNCATED);
+        }
+        if (!truncated && normalized.length() == length && text.contentEquals(normalized)) {
+            return text;
+        }
+        metrics.increment(METRIC_NORMALIZED);
+        return normalized.toString();
+    }
+}
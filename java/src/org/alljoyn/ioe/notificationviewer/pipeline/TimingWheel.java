@@ -0,0 +1,208 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel on the monotonic clock. Scheduling and cancelling are
+ * constant time; {@link #advance} hands back every element whose tick has
+ * passed in one list, so the caller can handle a whole tick at once. Delays
+ * longer than one turn of the wheel wait for the required number of rounds.
+ *
+ * Not thread safe, meant to be used by a single thread.
+ *
+ * @param <T> element type
+ */
+public class TimingWheel<T> {
+
+    public static final String METRIC_SCHEDULED = "expiry.scheduled";
+    public static final String METRIC_CANCELLED = "expiry.cancelled";
+    public static final String METRIC_EXPIRED = "expiry.expired";
+    public static final String METRIC_BATCH_MAX = "expiry.batch.max";
+    public static final String METRIC_LATE_NANOS_MAX = "expiry.lateNanos.max";
+
+    /**
+     * A scheduled element, used to cancel it
+     */
+    public static final class Timeout<T> {
+        private final T element;
+        private final long deadline;
+        private long tick;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        Timeout(T element, long deadline) {
+            this.element = element;
+            this.deadline = deadline;
+        }
+
+        public T getElement() {
+            return element;
+        }
+
+        /**
+         * @return false once the element expired or was cancelled
+         */
+        public boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private final long tickNanos;
+    private final long origin;
+    private final PipelineMetrics metrics;
+
+    // the next tick advance() processes
+    private long currentTick;
+    private int size;
+    // earliest tick anything is scheduled for, found again on demand once it is not known
+    private long earliestTick = Long.MAX_VALUE;
+    private boolean earliestKnown = true;
+
+    /**
+     * @param tickInMs resolution of the wheel
+     * @param wheelSize buckets per round, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickInMs, int wheelSize, PipelineMetrics metrics) {
+        int capacity = 1;
+        while (capacity < wheelSize) {
+            capacity <<= 1;
+        }
+        this.buckets = (Timeout<T>[]) new Timeout<?>[capacity];
+        this.mask = capacity - 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickInMs));
+        this.origin = System.nanoTime();
+        this.metrics = metrics;
+    }
+
+    public Timeout<T> schedule(T element, long delayInMs, long now) {
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayInMs));
+        // round up, an element never expires before its deadline
+        long tick = Math.max(currentTick, (deadline - origin + tickNanos - 1) / tickNanos);
+
+        Timeout<T> timeout = new Timeout<T>(element, deadline);
+        timeout.tick = tick;
+        timeout.rounds = (tick - currentTick) / buckets.length;
+        timeout.bucket = (int) (tick & mask);
+        timeout.next = buckets[timeout.bucket];
+        if (null != timeout.next) {
+            timeout.next.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+        if (earliestKnown) {
+            earliestTick = Math.min(earliestTick, tick);
+        }
+        metrics.increment(METRIC_SCHEDULED);
+        return timeout;
+    }
+
+    public void cancel(Timeout<T> timeout) {
+        if (null == timeout || !timeout.isPending()) {
+            return;
+        }
+        unlink(timeout);
+        metrics.increment(METRIC_CANCELLED);
+    }
+
+    /**
+     * Processes every tick up to now and appends the elements that expired to expired
+     */
+    public void advance(long now, List<T> expired) {
+        long nowTick = (now - origin) / tickNanos;
+        if (0 == size) {
+            currentTick = Math.max(currentTick, nowTick + 1);
+            return;
+        }
+        int count = 0;
+        while (currentTick <= nowTick) {
+            Timeout<T> timeout = buckets[(int) (currentTick & mask)];
+            while (null != timeout) {
+                Timeout<T> next = timeout.next;
+                if (timeout.rounds <= 0) {
+                    unlink(timeout);
+                    expired.add(timeout.element);
+                    metrics.max(METRIC_LATE_NANOS_MAX, now - timeout.deadline);
+                    count++;
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+            currentTick++;
+            if (0 == size) {
+                currentTick = Math.max(currentTick, nowTick + 1);
+                break;
+            }
+        }
+        if (count > 0) {
+            metrics.add(METRIC_EXPIRED, count);
+            metrics.max(METRIC_BATCH_MAX, count);
+        }
+    }
+
+    /**
+     * @return nanoseconds until the next tick with anything scheduled, or -1 if the wheel is empty
+     */
+    public long nanosUntilNextTick(long now) {
+        if (0 == size) {
+            return -1;
+        }
+        if (!earliestKnown) {
+            earliestTick = Long.MAX_VALUE;
+            for (Timeout<T> head : buckets) {
+                for (Timeout<T> timeout = head; null != timeout; timeout = timeout.next) {
+                    earliestTick = Math.min(earliestTick, timeout.tick);
+                }
+            }
+            earliestKnown = true;
+        }
+        return Math.max(0, origin + earliestTick * tickNanos - now);
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (null != timeout.prev) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (null != timeout.next) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+        if (0 == size) {
+            earliestTick = Long.MAX_VALUE;
+            earliestKnown = true;
+        } else if (timeout.tick == earliestTick) {
+            earliestKnown = false;
+        }
+    }
+}
@@ -20,4 +20,35 @@ public interface PropertiesManager {
     void init();
     int getNotificationPopupTimeoutInMs();
     int getNotificationFullscreenAlertTimeoutInMs();
+    int getIngestQueueCapacity();
+    String getIngestOverflowPolicy();
+    int getIngestBlockTimeoutInMs();
+    int getDedupWindowInMs();
+    int getDedupExpectedPerWindow();
+    double getDedupFalsePositiveRate();
+    String getLanePolicy();
+    String getLaneWeights();
+    int getLaneMaxWaitInMs();
+    int getRenderFrameBudgetInMs();
+    int getRateLimitPerMinute();
+    int getRateLimitBurst();
+    int getReorderHoldInMs();
+    int getCatchUpArrivalsPerSecond();
+    int getCatchUpStartupWindowInMs();
+    int getCatchUpQuietInMs();
+    int getCardPoolSize();
+    int getCardPoolPrewarm();
+    int getScrollQuietInMs();
+    int getScrollMaxDelayInMs();
+    int getMaxVisibleCards();
+    String getCardListMode();
+    int getEmergencyImageConnectTimeoutInMs();
+    int getEmergencyImageReadTimeoutInMs();
+    int getEmergencyImageTotalTimeoutInMs();
+    int getCardGroupWindowInMs();
+    int getTextMaxChars();
+    int getPopupTimeoutMinInMs();
+    int getPopupTimeoutFullLoadDepth();
+    int getPopupTimeoutFullLoadArrivalsPerSecond();
+    int getPreRenderWorkers();
 }
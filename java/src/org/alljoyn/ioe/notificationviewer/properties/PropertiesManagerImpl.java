@@ -32,9 +32,71 @@ public class PropertiesManagerImpl implements PropertiesManager {
     private final static String PROPERTIES_FILEPATH = Environment.getExternalStorageDirectory().getAbsolutePath() + Constants.ALLJOYN_DIR + Constants.PROPERTIES_FILENAME;
     private final static String KEY_NOTIF_POPUP_TIMEOUT_IN_MS = "notif_popup_timeout_in_ms";
     private final static String KEY_NOTIF_FULLSCREEN_ALERT_TIMEOUT_IN_MS = "notif_fullscreen_alert_timeout_in_ms";
+    private final static String KEY_INGEST_QUEUE_CAPACITY = "ingest_queue_capacity";
+    private final static String KEY_INGEST_OVERFLOW_POLICY = "ingest_overflow_policy";
+    private final static String KEY_INGEST_BLOCK_TIMEOUT_IN_MS = "ingest_block_timeout_in_ms";
+    private final static String KEY_DEDUP_WINDOW_IN_MS = "dedup_window_in_ms";
+    private final static String KEY_DEDUP_EXPECTED_PER_WINDOW = "dedup_expected_per_window";
+    private final static String KEY_DEDUP_FALSE_POSITIVE_RATE = "dedup_false_positive_rate";
+    private final static String KEY_LANE_POLICY = "lane_policy";
+    private final static String KEY_LANE_WEIGHTS = "lane_weights";
+    private final static String KEY_LANE_MAX_WAIT_IN_MS = "lane_max_wait_in_ms";
+    private final static String KEY_RENDER_FRAME_BUDGET_IN_MS = "render_frame_budget_in_ms";
+    private final static String KEY_RATE_LIMIT_PER_MINUTE = "rate_limit_per_minute";
+    private final static String KEY_RATE_LIMIT_BURST = "rate_limit_burst";
+    private final static String KEY_REORDER_HOLD_IN_MS = "reorder_hold_in_ms";
+    private final static String KEY_CATCH_UP_ARRIVALS_PER_SECOND = "catch_up_arrivals_per_second";
+    private final static String KEY_CATCH_UP_STARTUP_WINDOW_IN_MS = "catch_up_startup_window_in_ms";
+    private final static String KEY_CATCH_UP_QUIET_IN_MS = "catch_up_quiet_in_ms";
+    private final static String KEY_CARD_POOL_SIZE = "card_pool_size";
+    private final static String KEY_CARD_POOL_PREWARM = "card_pool_prewarm";
+    private final static String KEY_SCROLL_QUIET_IN_MS = "scroll_quiet_in_ms";
+    private final static String KEY_SCROLL_MAX_DELAY_IN_MS = "scroll_max_delay_in_ms";
+    private final static String KEY_MAX_VISIBLE_CARDS = "max_visible_cards";
+    private final static String KEY_CARD_LIST_MODE = "card_list_mode";
+    private final static String KEY_EMERGENCY_IMAGE_CONNECT_TIMEOUT_IN_MS = "emergency_image_connect_timeout_in_ms";
+    private final static String KEY_EMERGENCY_IMAGE_READ_TIMEOUT_IN_MS = "emergency_image_read_timeout_in_ms";
+    private final static String KEY_EMERGENCY_IMAGE_TOTAL_TIMEOUT_IN_MS = "emergency_image_total_timeout_in_ms";
+    private final static String KEY_CARD_GROUP_WINDOW_IN_MS = "card_group_window_in_ms";
+    private final static String KEY_TEXT_MAX_CHARS = "text_max_chars";
+    private final static String KEY_POPUP_TIMEOUT_MIN_IN_MS = "popup_timeout_min_in_ms";
+    private final static String KEY_POPUP_TIMEOUT_FULL_LOAD_DEPTH = "popup_timeout_full_load_depth";
+    private final static String KEY_POPUP_TIMEOUT_FULL_LOAD_ARRIVALS_PER_SECOND = "popup_timeout_full_load_arrivals_per_second";
+    private final static String KEY_PRE_RENDER_WORKERS = "pre_render_workers";
     
     private final static String DEFAULT_VALUE_NOTIF_POPUP_TIMEOUT_IN_MS = "45000";
     private final static String DEFAULT_VALUE_NOTIF_FULLSCREEN_ALERT_TIMEOUT_IN_MS = "10000";
+    private final static String DEFAULT_VALUE_INGEST_QUEUE_CAPACITY = "256";
+    private final static String DEFAULT_VALUE_INGEST_OVERFLOW_POLICY = "drop_info_first";
+    private final static String DEFAULT_VALUE_INGEST_BLOCK_TIMEOUT_IN_MS = "50";
+    private final static String DEFAULT_VALUE_DEDUP_WINDOW_IN_MS = "60000";
+    private final static String DEFAULT_VALUE_DEDUP_EXPECTED_PER_WINDOW = "2048";
+    private final static String DEFAULT_VALUE_DEDUP_FALSE_POSITIVE_RATE = "0.001";
+    private final static String DEFAULT_VALUE_LANE_POLICY = "strict";
+    private final static String DEFAULT_VALUE_LANE_WEIGHTS = "4,1";
+    private final static String DEFAULT_VALUE_LANE_MAX_WAIT_IN_MS = "2000";
+    private final static String DEFAULT_VALUE_RENDER_FRAME_BUDGET_IN_MS = "5";
+    private final static String DEFAULT_VALUE_RATE_LIMIT_PER_MINUTE = "20";
+    private final static String DEFAULT_VALUE_RATE_LIMIT_BURST = "10";
+    private final static String DEFAULT_VALUE_REORDER_HOLD_IN_MS = "200";
+    private final static String DEFAULT_VALUE_CATCH_UP_ARRIVALS_PER_SECOND = "10";
+    private final static String DEFAULT_VALUE_CATCH_UP_STARTUP_WINDOW_IN_MS = "30000";
+    private final static String DEFAULT_VALUE_CATCH_UP_QUIET_IN_MS = "2000";
+    private final static String DEFAULT_VALUE_CARD_POOL_SIZE = "16";
+    private final static String DEFAULT_VALUE_CARD_POOL_PREWARM = "4";
+    private final static String DEFAULT_VALUE_SCROLL_QUIET_IN_MS = "500";
+    private final static String DEFAULT_VALUE_SCROLL_MAX_DELAY_IN_MS = "1000";
+    private final static String DEFAULT_VALUE_MAX_VISIBLE_CARDS = "0";
+    private final static String DEFAULT_VALUE_CARD_LIST_MODE = "linear";
+    private final static String DEFAULT_VALUE_EMERGENCY_IMAGE_CONNECT_TIMEOUT_IN_MS = "3000";
+    private final static String DEFAULT_VALUE_EMERGENCY_IMAGE_READ_TIMEOUT_IN_MS = "5000";
+    private final static String DEFAULT_VALUE_EMERGENCY_IMAGE_TOTAL_TIMEOUT_IN_MS = "10000";
+    private final static String DEFAULT_VALUE_CARD_GROUP_WINDOW_IN_MS = "0";
+    private final static String DEFAULT_VALUE_TEXT_MAX_CHARS = "0";
+    private final static String DEFAULT_VALUE_POPUP_TIMEOUT_MIN_IN_MS = "10000";
+    private final static String DEFAULT_VALUE_POPUP_TIMEOUT_FULL_LOAD_DEPTH = "16";
+    private final static String DEFAULT_VALUE_POPUP_TIMEOUT_FULL_LOAD_ARRIVALS_PER_SECOND = "2";
+    private final static String DEFAULT_VALUE_PRE_RENDER_WORKERS = "2";
     
     private Properties properties;
     
@@ -118,4 +180,191 @@ public class PropertiesManagerImpl implements PropertiesManager {
         return retval;
     }
 
+    @Override
+    public int getIngestQueueCapacity() {
+        return getIntValue(KEY_INGEST_QUEUE_CAPACITY, DEFAULT_VALUE_INGEST_QUEUE_CAPACITY);
+    }
+
+    @Override
+    public String getIngestOverflowPolicy() {
+        return getStringValue(KEY_INGEST_OVERFLOW_POLICY, DEFAULT_VALUE_INGEST_OVERFLOW_POLICY);
+    }
+
+    @Override
+    public int getIngestBlockTimeoutInMs() {
+        return getIntValue(KEY_INGEST_BLOCK_TIMEOUT_IN_MS, DEFAULT_VALUE_INGEST_BLOCK_TIMEOUT_IN_MS);
+    }
+
+    @Override
+    public int getDedupWindowInMs() {
+        return getIntValue(KEY_DEDUP_WINDOW_IN_MS, DEFAULT_VALUE_DEDUP_WINDOW_IN_MS);
+    }
+
+    @Override
+    public int getDedupExpectedPerWindow() {
+        return getIntValue(KEY_DEDUP_EXPECTED_PER_WINDOW, DEFAULT_VALUE_DEDUP_EXPECTED_PER_WINDOW);
+    }
+
+    @Override
+    public double getDedupFalsePositiveRate() {
+        return getDoubleValue(KEY_DEDUP_FALSE_POSITIVE_RATE, DEFAULT_VALUE_DEDUP_FALSE_POSITIVE_RATE);
+    }
+
+    @Override
+    public String getLanePolicy() {
+        return getStringValue(KEY_LANE_POLICY, DEFAULT_VALUE_LANE_POLICY);
+    }
+
+    @Override
+    public String getLaneWeights() {
+        return getStringValue(KEY_LANE_WEIGHTS, DEFAULT_VALUE_LANE_WEIGHTS);
+    }
+
+    @Override
+    public int getLaneMaxWaitInMs() {
+        return getIntValue(KEY_LANE_MAX_WAIT_IN_MS, DEFAULT_VALUE_LANE_MAX_WAIT_IN_MS);
+    }
+
+    @Override
+    public int getRenderFrameBudgetInMs() {
+        return getIntValue(KEY_RENDER_FRAME_BUDGET_IN_MS, DEFAULT_VALUE_RENDER_FRAME_BUDGET_IN_MS);
+    }
+
+    @Override
+    public int getRateLimitPerMinute() {
+        return getIntValue(KEY_RATE_LIMIT_PER_MINUTE, DEFAULT_VALUE_RATE_LIMIT_PER_MINUTE);
+    }
+
+    @Override
+    public int getRateLimitBurst() {
+        return getIntValue(KEY_RATE_LIMIT_BURST, DEFAULT_VALUE_RATE_LIMIT_BURST);
+    }
+
+    @Override
+    public int getReorderHoldInMs() {
+        return getIntValue(KEY_REORDER_HOLD_IN_MS, DEFAULT_VALUE_REORDER_HOLD_IN_MS);
+    }
+
+    @Override
+    public int getCatchUpArrivalsPerSecond() {
+        return getIntValue(KEY_CATCH_UP_ARRIVALS_PER_SECOND, DEFAULT_VALUE_CATCH_UP_ARRIVALS_PER_SECOND);
+    }
+
+    @Override
+    public int getCatchUpStartupWindowInMs() {
+        return getIntValue(KEY_CATCH_UP_STARTUP_WINDOW_IN_MS, DEFAULT_VALUE_CATCH_UP_STARTUP_WINDOW_IN_MS);
+    }
+
+    @Override
+    public int getCatchUpQuietInMs() {
+        return getIntValue(KEY_CATCH_UP_QUIET_IN_MS, DEFAULT_VALUE_CATCH_UP_QUIET_IN_MS);
+    }
+
+    @Override
+    public int getCardPoolSize() {
+        return getIntValue(KEY_CARD_POOL_SIZE, DEFAULT_VALUE_CARD_POOL_SIZE);
+    }
+
+    @Override
+    public int getCardPoolPrewarm() {
+        return getIntValue(KEY_CARD_POOL_PREWARM, DEFAULT_VALUE_CARD_POOL_PREWARM);
+    }
+
+    @Override
+    public int getScrollQuietInMs() {
+        return getIntValue(KEY_SCROLL_QUIET_IN_MS, DEFAULT_VALUE_SCROLL_QUIET_IN_MS);
+    }
+
+    @Override
+    public int getScrollMaxDelayInMs() {
+        return getIntValue(KEY_SCROLL_MAX_DELAY_IN_MS, DEFAULT_VALUE_SCROLL_MAX_DELAY_IN_MS);
+    }
+
+    @Override
+    public int getMaxVisibleCards() {
+        return getIntValue(KEY_MAX_VISIBLE_CARDS, DEFAULT_VALUE_MAX_VISIBLE_CARDS);
+    }
+
+    @Override
+    public String getCardListMode() {
+        return getStringValue(KEY_CARD_LIST_MODE, DEFAULT_VALUE_CARD_LIST_MODE);
+    }
+
+    @Override
+    public int getEmergencyImageConnectTimeoutInMs() {
+        return getIntValue(KEY_EMERGENCY_IMAGE_CONNECT_TIMEOUT_IN_MS, DEFAULT_VALUE_EMERGENCY_IMAGE_CONNECT_TIMEOUT_IN_MS);
+    }
+
+    @Override
+    public int getEmergencyImageReadTimeoutInMs() {
+        return getIntValue(KEY_EMERGENCY_IMAGE_READ_TIMEOUT_IN_MS, DEFAULT_VALUE_EMERGENCY_IMAGE_READ_TIMEOUT_IN_MS);
+    }
+
+    @Override
+    public int getEmergencyImageTotalTimeoutInMs() {
+        return getIntValue(KEY_EMERGENCY_IMAGE_TOTAL_TIMEOUT_IN_MS, DEFAULT_VALUE_EMERGENCY_IMAGE_TOTAL_TIMEOUT_IN_MS);
+    }
+
+    @Override
+    public int getCardGroupWindowInMs() {
+        return getIntValue(KEY_CARD_GROUP_WINDOW_IN_MS, DEFAULT_VALUE_CARD_GROUP_WINDOW_IN_MS);
+    }
+
+    @Override
+    public int getTextMaxChars() {
+        return getIntValue(KEY_TEXT_MAX_CHARS, DEFAULT_VALUE_TEXT_MAX_CHARS);
+    }
+
+    @Override
+    public int getPopupTimeoutMinInMs() {
+        return getIntValue(KEY_POPUP_TIMEOUT_MIN_IN_MS, DEFAULT_VALUE_POPUP_TIMEOUT_MIN_IN_MS);
+    }
+
+    @Override
+    public int getPopupTimeoutFullLoadDepth() {
+        return getIntValue(KEY_POPUP_TIMEOUT_FULL_LOAD_DEPTH, DEFAULT_VALUE_POPUP_TIMEOUT_FULL_LOAD_DEPTH);
+    }
+
+    @Override
+    public int getPopupTimeoutFullLoadArrivalsPerSecond() {
+        return getIntValue(KEY_POPUP_TIMEOUT_FULL_LOAD_ARRIVALS_PER_SECOND, DEFAULT_VALUE_POPUP_TIMEOUT_FULL_LOAD_ARRIVALS_PER_SECOND);
+    }
+
+    @Override
+    public int getPreRenderWorkers() {
+        return getIntValue(KEY_PRE_RENDER_WORKERS, DEFAULT_VALUE_PRE_RENDER_WORKERS);
+    }
+
+    private String getStringValue(String key, String defaultValue) {
+        String value = null;
+        if (null != properties) {
+            value = (String) properties.get(key);
+        }
+        return (null != value) ? value.trim() : defaultValue;
+    }
+
+    private int getIntValue(String key, String defaultValue) {
+        int retval = Integer.parseInt(defaultValue);
+        String value = getStringValue(key, defaultValue);
+        try {
+            retval = Integer.parseInt(value);
+        }
+        catch (NumberFormatException nfe) {
+            nfe.printStackTrace();
+        }
+        return retval;
+    }
+
+    private double getDoubleValue(String key, String defaultValue) {
+        double retval = Double.parseDouble(defaultValue);
+        String value = getStringValue(key, defaultValue);
+        try {
+            retval = Double.parseDouble(value);
+        }
+        catch (NumberFormatException nfe) {
+            nfe.printStackTrace();
+        }
+        return retval;
+    }
+
 }
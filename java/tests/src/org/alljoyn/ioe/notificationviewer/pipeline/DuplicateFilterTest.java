@@ -0,0 +1,92 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+public class DuplicateFilterTest extends TestCase {
+
+    private static final long WINDOW_IN_MS = 60000;
+    private static final int EXPECTED_PER_WINDOW = 2048;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final int DEVICES = 16;
+
+    private final UUID[] appIds = new UUID[DEVICES];
+    private DuplicateFilter filter;
+    private PipelineMetrics metrics;
+
+    @Override
+    protected void setUp() {
+        for (int i = 0; i < DEVICES; i++) {
+            appIds[i] = new UUID(i, i * 31L);
+        }
+        metrics = new PipelineMetrics();
+        filter = new DuplicateFilter(WINDOW_IN_MS, EXPECTED_PER_WINDOW, FALSE_POSITIVE_RATE, metrics);
+    }
+
+    public void testRepeatIsDropped() {
+        assertFalse(filter.isDuplicate(appIds[0], 1, NotificationMessageType.INFO));
+        assertTrue(filter.isDuplicate(appIds[0], 1, NotificationMessageType.INFO));
+        assertFalse(filter.isDuplicate(appIds[1], 1, NotificationMessageType.INFO));
+    }
+
+    public void testFalseDropRateStaysNearTargetPastExpectedPerWindow() {
+        int storm = 10 * EXPECTED_PER_WINDOW;
+        int dropped = insertDistinct(0, storm);
+        assertTrue("dropped " + dropped + " of " + storm, dropped <= storm * 4 * FALSE_POSITIVE_RATE);
+
+        int after = 1000;
+        dropped = insertDistinct(storm, after);
+        assertTrue("dropped " + dropped + " of the next " + after, dropped <= Math.max(2, after * 4 * FALSE_POSITIVE_RATE));
+        assertTrue(metrics.getValue(DuplicateFilter.METRIC_ROTATIONS_FULL) > 0);
+    }
+
+    public void testEmergencyIsNotDroppedOnBloomHitAlone() {
+        assertFalse(filter.isDuplicate(appIds[0], 1, NotificationMessageType.EMERGENCY));
+        // pushes the key out of the exact cache, it is left in the Bloom filter only
+        insertDistinct(100, 1000);
+
+        assertFalse(filter.isDuplicate(appIds[0], 1, NotificationMessageType.EMERGENCY));
+        assertEquals(1, metrics.getValue(DuplicateFilter.METRIC_BLOOM_PASSED));
+        // now back in the exact cache
+        assertTrue(filter.isDuplicate(appIds[0], 1, NotificationMessageType.EMERGENCY));
+    }
+
+    public void testInfoIsDroppedOnBloomHit() {
+        assertFalse(filter.isDuplicate(appIds[0], 1, NotificationMessageType.INFO));
+        insertDistinct(100, 1000);
+
+        assertTrue(filter.isDuplicate(appIds[0], 1, NotificationMessageType.INFO));
+    }
+
+    /**
+     * @return how many of the distinct keys were taken for repeats
+     */
+    private int insertDistinct(int firstId, int count) {
+        int dropped = 0;
+        for (int i = firstId; i < firstId + count; i++) {
+            if (filter.isDuplicate(appIds[i % DEVICES], i / DEVICES, NotificationMessageType.INFO)) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+}
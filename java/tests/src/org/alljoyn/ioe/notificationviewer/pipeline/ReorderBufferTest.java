@@ -0,0 +1,109 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.alljoyn.ns.NotificationMessageType;
+
+public class ReorderBufferTest extends TestCase {
+
+    private static final long HOLD_IN_MS = 200;
+    private static final long HOLD_NANOS = HOLD_IN_MS * 1000000L;
+
+    private final UUID appId = new UUID(1, 2);
+    private final List<NotificationRecord> released = new ArrayList<NotificationRecord>();
+    private ReorderBuffer buffer;
+    private PipelineMetrics metrics;
+    private long now;
+
+    @Override
+    protected void setUp() {
+        metrics = new PipelineMetrics();
+        buffer = new ReorderBuffer(HOLD_IN_MS, metrics);
+        now = System.nanoTime();
+    }
+
+    public void testGapIsFilledInOrder() {
+        offer(1);
+        offer(3);
+        assertReleased(1);
+        offer(2);
+        assertReleased(1, 2, 3);
+    }
+
+    public void testProducerRestartStartsNewSequence() {
+        for (int id = 1000; id < 1010; id++) {
+            offer(id);
+        }
+        released.clear();
+
+        offer(1);
+        offer(2);
+        offer(4);
+        assertReleased(1, 2);
+        offer(3);
+        assertReleased(1, 2, 3, 4);
+        assertEquals(1, metrics.getValue(ReorderBuffer.METRIC_RESTARTS));
+    }
+
+    public void testRestartReleasesWhatWasHeld() {
+        offer(1000);
+        offer(1002);
+        assertReleased(1000);
+
+        offer(1);
+        assertReleased(1000, 1002, 1);
+        assertEquals(-1, buffer.nanosUntilNextRelease(now));
+    }
+
+    public void testStragglerPassesWithoutRestart() {
+        for (int id = 1; id <= 10; id++) {
+            offer(id);
+        }
+        offer(5);
+        offer(12);
+        // still ordering after the last one shown, 10
+        assertReleased(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 5);
+        offer(11);
+        assertReleased(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 5, 11, 12);
+        assertEquals(0, metrics.getValue(ReorderBuffer.METRIC_RESTARTS));
+    }
+
+    public void testHoldWindowEnds() {
+        offer(1);
+        offer(3);
+        buffer.releaseExpired(now + HOLD_NANOS, released);
+        assertReleased(1, 3);
+    }
+
+    private void offer(int messageId) {
+        buffer.offer(new NotificationRecord(appId, messageId, NotificationMessageType.INFO, "device", "Device", "text " + messageId, null), now,
+                released);
+    }
+
+    private void assertReleased(int... messageIds) {
+        assertEquals(messageIds.length, released.size());
+        for (int i = 0; i < messageIds.length; i++) {
+            assertEquals(messageIds[i], released.get(i).getMessageId());
+        }
+    }
+}
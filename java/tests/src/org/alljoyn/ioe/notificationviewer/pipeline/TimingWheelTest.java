@@ -0,0 +1,89 @@
+/******************************************************************************
+ * Copyright (c) 2013-2014, AllSeen Alliance. All rights reserved.
+ *
+ *    Permission to use, copy, modify, and/or distribute this software for any
+ *    purpose with or without fee is hereby granted, provided that the above
+ *    copyright notice and this permission notice appear in all copies.
+ *
+ *    THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ *    WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ *    MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ *    ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ *    WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ *    ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ *    OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ ******************************************************************************/
+
+package org.alljoyn.ioe.notificationviewer.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TimingWheelTest extends TestCase {
+
+    private static final long TICK_IN_MS = 10;
+    private static final long TICK_NANOS = TICK_IN_MS * 1000000L;
+    private static final int WHEEL_SIZE = 512;
+
+    private TimingWheel<String> wheel;
+    private long now;
+
+    @Override
+    protected void setUp() {
+        wheel = new TimingWheel<String>(TICK_IN_MS, WHEEL_SIZE, new PipelineMetrics());
+        now = System.nanoTime();
+    }
+
+    public void testEmptyWheelHasNoNextTick() {
+        assertEquals(-1, wheel.nanosUntilNextTick(now));
+    }
+
+    public void testNextTickIsTheEarliestDeadline() {
+        wheel.schedule("late", 1000, now);
+        wheel.schedule("early", 100, now);
+        assertNextTickWithin(100);
+    }
+
+    public void testCancellingTheEarliestMovesTheNextTick() {
+        TimingWheel.Timeout<String> early = wheel.schedule("early", 100, now);
+        wheel.schedule("late", 1000, now);
+        wheel.cancel(early);
+        assertNextTickWithin(1000);
+
+        wheel.cancel(wheel.schedule("later", 2000, now));
+        assertNextTickWithin(1000);
+    }
+
+    public void testDeadlinePastOneRoundIsNotReportedEarly() {
+        long beyondRound = 2 * WHEEL_SIZE * TICK_IN_MS;
+        wheel.schedule("far", beyondRound, now);
+        assertNextTickWithin(beyondRound);
+    }
+
+    public void testAdvanceExpiresInOrderOfTicks() {
+        wheel.schedule("early", 100, now);
+        wheel.schedule("late", 1000, now);
+        List<String> expired = new ArrayList<String>();
+
+        wheel.advance(now + 500 * 1000000L, expired);
+        assertEquals(1, expired.size());
+        assertEquals("early", expired.get(0));
+        assertNextTickWithin(1000);
+
+        wheel.advance(now + 1000 * 1000000L + TICK_NANOS, expired);
+        assertEquals(2, expired.size());
+        assertEquals(-1, wheel.nanosUntilNextTick(now));
+    }
+
+    /**
+     * The next tick is the deadline rounded up to the tick
+     */
+    private void assertNextTickWithin(long delayInMs) {
+        long nanos = wheel.nanosUntilNextTick(now);
+        long deadline = delayInMs * 1000000L;
+        assertTrue(nanos + " before " + deadline, nanos >= deadline);
+        assertTrue(nanos + " after " + deadline, nanos <= deadline + TICK_NANOS);
+    }
+}